@@ -1,6 +1,12 @@
 package projet_poo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.io.File;
 import java.io.IOException;
@@ -10,21 +16,25 @@ import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Ceci est une classe singleton (une seule instance de cette classe peut exister).
+ * Le programme en ligne de commande utilise une seule instance de cette classe, obtenue avec
+ * {@link #getInstance()}. Le mode serveur ({@link Serveur}) garde en mémoire plusieurs
+ * agglomérations, créées avec le constructeur public.
  * Un objet agglomération représente un ensemble de {@link Ville}s reliées entre
  * elles par des routes. Ceci correspond à un graphe simple non-orienté dans
  * lequel les sommets sont des villes et les arêtes sont des routes. On
- * représente ce graphe par une liste d'objets Ville et une matrice d'adjacence
- * de booléens.
+ * représente ce graphe par une liste d'objets Ville et des listes d'adjacence,
+ * et on le présente aux algorithmes à travers l'interface {@link Graphe}.
  * 
  * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
  */
-public final class Agglomeration {
+public final class Agglomeration implements Graphe {
 
 	/**
-	 * Attribut d'une classe singleton : unique instance de la classe Agglomeration.
+	 * Instance de la classe Agglomeration utilisée par le programme en ligne de commande.
 	 */
 	private static Agglomeration INSTANCE;
 
@@ -34,35 +44,81 @@ public final class Agglomeration {
 	private ArrayList<Ville> villes;
 
 	/**
-	 * Contient le nombre de villes de l'agglomération, qui est fixé à la création
-	 * et ne change plus. Il s'agit d'un alias car cette valeur peut également être
-	 * obtenue avec villes.size() ou matriceAdjacence.length.
+	 * Associe le nom de chaque ville à son indice dans l'attribut villes, pour trouver
+	 * une ville par son nom sans parcourir toute la liste. Si plusieurs villes ont le
+	 * même nom, seule la première est présente.
+	 */
+	private HashMap<String, Integer> indicesVilles;
+
+	/**
+	 * Les deux moitiés de l'empreinte du graphe (voir {@link #getEmpreinte()}). Chacune est
+	 * la somme des hachages des noms des villes et des paires de noms des routes, avec
+	 * deux graines différentes. Une somme ne dépend pas de l'ordre des villes et des routes
+	 * dans le fichier, et se met à jour en O(1) à chaque ajout.
+	 */
+	private long empreinteA, empreinteB;
+
+	/**
+	 * Contient le nombre de villes de l'agglomération, fixé à la création et augmenté
+	 * seulement par les villes ajoutées par un fichier delta ({@link #appliquerDelta(String)}).
+	 * Il s'agit d'un alias car cette valeur peut également être obtenue avec villes.size().
 	 */
 	private int nombreDeVilles;
 
 	/**
-	 * La matrice d'adjacence représentant les routes entre les villes de
-	 * l'agglomération par des booléens. Si les villes d'indice i et j dans
-	 * l'attribut villes sont voisines, on a matriceAdjacence[i][j] et
-	 * matriceAdjacence[j][i] à true. Sinon, ces deux valeurs sont à false.
+	 * Les listes d'adjacence représentant les routes entre les villes de
+	 * l'agglomération. Les degres[i] premières cases de listesAdjacence[i] contiennent
+	 * les indices des villes voisines de la ville d'indice i dans l'attribut villes,
+	 * dans l'ordre d'ajout des routes. Chaque route apparaît donc dans les listes de
+	 * ses deux villes. Une liste est agrandie au besoin, comme une ArrayList. Contrairement
+	 * à une matrice d'adjacence, la mémoire utilisée est proportionnelle au nombre de
+	 * routes et parcourir les voisins d'une ville ne coûte que son degré.
 	 */
-	private boolean[][] matriceAdjacence;
+	private int[][] listesAdjacence;
 
 	/**
-	 * Constructeur privé pour que cette classe soit un singleton.
-	 * Construit une agglomération avec 0 villes. La matrice d'adjacence
-	 * n'est pas créée ici car elle doit avoir la taille du nombre de villes final.
+	 * Le nombre de voisins de chaque ville, c'est-à-dire la taille utilisée de chaque
+	 * liste de listesAdjacence.
 	 */
-	private Agglomeration() {
+	private int[] degres;
+
+	/**
+	 * État de l'agglomération lors du dernier chargement ou de la dernière sauvegarde, pour
+	 * n'écrire que les modifications faites depuis dans un fichier delta : le nombre de villes,
+	 * les routes ajoutées (true) ou retirées (false) depuis, par paire d'indices (voir
+	 * {@link #cleRoute(int, int)}), et les villes dont l'école a été ajoutée (true) ou retirée
+	 * (false) depuis, par indice. Une route ou une école ajoutée puis retirée n'y figure plus :
+	 * la taille de ces journaux ne dépend que du nombre de modifications, et ils sont remis à
+	 * zéro en O(1) à chaque sauvegarde. routesModifiees et ecolesModifiees valent null pendant
+	 * le chargement.
+	 */
+	private int nombreDeVillesSauvegardees;
+	private LinkedHashMap<Long, Boolean> routesModifiees;
+	private LinkedHashMap<Integer, Boolean> ecolesModifiees;
+
+	/**
+	 * Verrou lecture-écriture protégeant cette agglomération lorsqu'elle est partagée
+	 * entre plusieurs threads (mode serveur). Les méthodes de cette classe ne le prennent
+	 * pas elles-mêmes : c'est à l'appelant de prendre le verrou en lecture pour les
+	 * consultations et en écriture pour les modifications.
+	 */
+	private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+	/**
+	 * Construit une agglomération avec 0 villes, à remplir avec {@link #init(String)}.
+	 * Les listes d'adjacence ne sont pas créées ici car il en faut une par ville.
+	 */
+	public Agglomeration() {
 		villes = new ArrayList<Ville>(0);
+		indicesVilles = new HashMap<String, Integer>();
 		nombreDeVilles = 0;
 	}
 
 	/**
-	 * Attribut d'une classe singleton : charge l'unique instance de la
-	 * classe en mémoire si ce n'est pas déja fait, et la retourne.
+	 * Charge l'instance utilisée par le programme en ligne de commande
+	 * en mémoire si ce n'est pas déja fait, et la retourne.
 	 * 
-	 * @return : l'unique instance de Agglomeration.
+	 * @return : l'instance de Agglomeration du programme en ligne de commande.
 	 */
 	public static Agglomeration getInstance() {
 		if (INSTANCE == null)
@@ -74,11 +130,15 @@ public final class Agglomeration {
 	/**
 	 * Initialisation de cette agglomération en ajoutant les villes, routes et écoles présentes
 	 * dans le fichier donné en argument. Si les écoles ne satisfont pas la contrainte d'accessibilité,
-	 * la {@link #solutionNaive()} est utilisée. Crée d'abord les villes, puis la matrice d'adjacence à
-	 * la bonne taille, puis ajoute les routes dans la matrice, et enfin ajoute les écoles et le vérifie.
+	 * des écoles sont ajoutées autour des seules villes non couvertes avec
+	 * {@link SolveurGlouton#completer(Graphe, BitSet)}. Crée d'abord les villes, puis une liste d'adjacence par
+	 * ville, puis ajoute les routes dans ces listes, et enfin ajoute les écoles et le vérifie.
 	 * Toute erreur de syntaxe est repérée et lève l'exception {@link SyntaxeFichierInvalideException}
 	 * dont le message explique l'erreur en détail.
 	 * 
+	 * Les fichiers d'au moins {@link ChargeurParallele#TAILLE_MIN} octets sont lus par morceaux
+	 * sur plusieurs threads avec {@link ChargeurParallele}, qui signale les mêmes erreurs.
+	 * 
 	 * Liste des erreurs de syntaxe :
 	 * - aucune ville présente ;
 	 * - ligne vide ou ne correspondant pas exactement à "ville(...)", "route(...,...)"
@@ -97,112 +157,415 @@ public final class Agglomeration {
 	 */
 	public void init(String cheminDuFichier) throws IOException, SyntaxeFichierInvalideException {
 		File fichier = new File(cheminDuFichier);
-		FileReader fr = new FileReader(fichier);
-		BufferedReader contenu = new BufferedReader(fr);
-		
+		if (fichier.length() >= ChargeurParallele.TAILLE_MIN && Runtime.getRuntime().availableProcessors() > 1)
+			new ChargeurParallele(fichier, this).charger();
+		else
+			lireSequentiellement(fichier);
+
+		nombreDeVilles = villes.size();
+		if (nombreDeVilles == 0) {
+			throw new SyntaxeFichierInvalideException("Il faut au moins une ville");
+		}
+
+		if (listesAdjacence == null) // S'il n'y a aucune route dans le fichier
+			creerListesAdjacence();
+		marquerSauvegarde();
+
+		completerEcoles(Validation.villesNonCouvertes(this));
+	}
+
+	/**
+	 * Applique à cette agglomération déjà chargée les modifications décrites dans un fichier
+	 * delta (voir {@link FichierDelta}), en un temps proportionnel à la taille de ce fichier.
+	 * Toutes les modifications sont appliquées, ou aucune en cas d'erreur. Seules les villes
+	 * touchées par les modifications sont ensuite vérifiées, et si certaines ne respectent plus
+	 * la contrainte d'accessibilité, des écoles sont ajoutées autour d'elles.
+	 * 
+	 * @param cheminDuFichier : chemin relatif ou absolu du fichier delta.
+	 * 
+	 * @throws IOException : lancée pour toute erreur d'accès ou de lecture sur le fichier.
+	 * @throws SyntaxeFichierInvalideException : lancée pour la première ligne du fichier invalide ou
+	 * qui ne peut pas être appliquée. Possèdera un message qui décrit l'erreur en détail.
+	 */
+	public void appliquerDelta(String cheminDuFichier) throws IOException, SyntaxeFichierInvalideException {
+		completerEcoles(new FichierDelta(this).appliquer(new File(cheminDuFichier)));
+	}
+
+	/**
+	 * Si des villes ne respectent pas la contrainte d'accessibilité, ajoute des écoles autour
+	 * d'elles avec {@link SolveurGlouton#completer(Graphe, BitSet)} et l'affiche.
+	 * 
+	 * @param nonCouvertes : l'ensemble des indices des villes non couvertes.
+	 */
+	private void completerEcoles(BitSet nonCouvertes) {
+		if (!nonCouvertes.isEmpty()) {
+			int villesNonCouvertes = nonCouvertes.cardinality();
+			int ecolesAjoutees = SolveurGlouton.completer(this, nonCouvertes);
+			System.out.println("La configuration des écoles est invalide (" + villesNonCouvertes
+					+ " villes non couvertes). Ajout de " + ecolesAjoutees + " écoles.");
+		}
+	}
+
+	/**
+	 * Expressions régulières auxquelles doivent correspondre exactement les lignes d'un fichier
+	 * d'agglomération. Elles sont compilées une seule fois plutôt qu'à chaque appel de
+	 * String.matches().
+	 */
+	static final Pattern MOTIF_VILLE = Pattern.compile("ville\\(.+\\)\\.?"),
+			MOTIF_ROUTE = Pattern.compile("route\\(.+,.+\\)\\.?"),
+			MOTIF_ECOLE = Pattern.compile("ecole\\(.+\\)\\.?");
+
+	/**
+	 * @param ligne : une ligne qui correspond à {@link #MOTIF_VILLE}.
+	 * @return le nom de la ville de la ligne.
+	 */
+	static String nomVilleDeLigne(String ligne) {
+		return new StringTokenizer(ligne.split("ville")[1], "()").nextToken();
+	}
+
+	/**
+	 * @param ligne : une ligne qui correspond à {@link #MOTIF_ROUTE}.
+	 * @return les noms des deux villes de la route.
+	 * @throws NoSuchElementException : lancée si la ligne ne contient pas deux noms de ville.
+	 */
+	static String[] nomsVillesDeRoute(String ligne) {
+		StringTokenizer st = new StringTokenizer(ligne.split("route")[1], "(,)");
+		String nomVille1 = st.nextToken();
+		String nomVille2 = st.nextToken();
+		return new String[] { nomVille1, nomVille2 };
+	}
+
+	/**
+	 * @param ligne : une ligne qui correspond à {@link #MOTIF_ECOLE}.
+	 * @return la partie de la ligne qui suit "ecole", reprise dans les messages d'erreur.
+	 */
+	static String argumentEcole(String ligne) {
+		return ligne.split("ecole")[1];
+	}
+
+	/**
+	 * @param argument : la partie d'une ligne d'école donnée par {@link #argumentEcole(String)}.
+	 * @return le nom de la ville de l'école.
+	 */
+	static String nomVilleDEcole(String argument) {
+		return new StringTokenizer(argument, "()").nextToken();
+	}
+
+	/**
+	 * Lit le fichier ligne par ligne sur le thread courant pour {@link #init(String)}. Les routes
+	 * lues sont d'abord rangées par paires d'indices de villes, et ne sont ajoutées aux listes
+	 * d'adjacence qu'une fois tout le fichier lu, ce qui sépare la durée de lecture de celle de
+	 * construction du graphe dans les {@link Metriques}. Si une erreur est trouvée pendant la
+	 * lecture, les routes lues avant sont ajoutées d'abord, pour qu'une route en double plus
+	 * haut dans le fichier soit signalée à sa place.
+	 * 
+	 * @param fichier : le fichier décrivant une agglomération.
+	 * 
+	 * @throws IOException : lancée pour toute erreur d'accès ou de lecture sur le fichier.
+	 * @throws SyntaxeFichierInvalideException : lancée pour toute erreur de syntaxe dans le fichier.
+	 */
+	void lireSequentiellement(File fichier) throws IOException, SyntaxeFichierInvalideException {
+		Metriques metriques = Metriques.getInstance();
+		long debutLecture = System.nanoTime();
+		long lignesLues = 0;
+
+		int[] routes = new int[64]; // Deux indices de ville par route, dans l'ordre du fichier
+		int nombreRoutes = 0;
+		long premiereRoute = 0; // Numéro de la ligne de la première route, 0 s'il n'y en a pas
+		long sommeA = 0, sommeB = 0;
 		boolean ecolesDansFichier = false;
-		boolean stop = false;
-		do {
-			String line = contenu.readLine();
-			StringTokenizer st;
-			
-			if (line == null) {
-				stop = true;
-			}
-			else if (line.matches("ville\\(.+\\)\\.?")) {
-				if (matriceAdjacence != null) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ville après une route");
-				}
-				else if (ecolesDansFichier) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ville après une école");
-				}
-				
-				line = line.split("ville")[1];
-				st = new StringTokenizer(line, "()");
-				line = st.nextToken();
-				villes.add(new Ville(line));
-			}
-			else if (line.matches("route\\(.+,.+\\)\\.?")) {
-				if (ecolesDansFichier) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de route après une école");
-				}
-				
-				if (matriceAdjacence == null)
-					matriceAdjacence = new boolean[villes.size()][villes.size()];
-				st = new StringTokenizer(line.split("route")[1], "(,)");
-				String nomVille1 = "", nomVille2 = "";
-				try {
-					nomVille1 = st.nextToken();
-					nomVille2 = st.nextToken();
-				} catch (NoSuchElementException e) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Il faut donner deux villes pour une route : "
-					+ line);
+
+		try (BufferedReader contenu = new BufferedReader(new FileReader(fichier))) {
+			String line;
+			while ((line = contenu.readLine()) != null) {
+				lignesLues++;
+
+				if (MOTIF_VILLE.matcher(line).matches()) {
+					if (premiereRoute != 0)
+						throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ville après une route");
+					else if (ecolesDansFichier)
+						throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ville après une école");
+
+					ajouterVille(nomVilleDeLigne(line));
 				}
-				
-				if (nomVille1.equals(nomVille2)) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Une route ne doit pas être d'une ville"
-					+ " vers elle-même : " + line);
+				else if (MOTIF_ROUTE.matcher(line).matches()) {
+					if (ecolesDansFichier)
+						throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de route après une école");
+
+					if (premiereRoute == 0)
+						premiereRoute = lignesLues;
+					String nomVille1 = "", nomVille2 = "";
+					try {
+						String[] noms = nomsVillesDeRoute(line);
+						nomVille1 = noms[0];
+						nomVille2 = noms[1];
+					} catch (NoSuchElementException e) {
+						throw new SyntaxeFichierInvalideException("Il faut donner deux villes pour une route : "
+						+ line);
+					}
+
+					if (nomVille1.equals(nomVille2))
+						throw new SyntaxeFichierInvalideException("Une route ne doit pas être d'une ville"
+						+ " vers elle-même : " + line);
+
+					int indice1 = getIndiceVille(nomVille1);
+					int indice2 = getIndiceVille(nomVille2);
+					if (indice1 < 0 || indice2 < 0)
+						throw new SyntaxeFichierInvalideException("Route invalide : " + line);
+					if (2 * nombreRoutes == routes.length)
+						routes = Arrays.copyOf(routes, 2 * routes.length);
+					routes[2 * nombreRoutes] = indice1;
+					routes[2 * nombreRoutes + 1] = indice2;
+					nombreRoutes++;
+					sommeA += hacherRoute(GRAINE_A, nomVille1, nomVille2);
+					sommeB += hacherRoute(GRAINE_B, nomVille1, nomVille2);
 				}
-				
-				boolean retourAjoutRoute = ajouterRoute(nomVille1, nomVille2);
-				if (!retourAjoutRoute) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Route invalide : " + line);
+				else if (MOTIF_ECOLE.matcher(line).matches()) {
+					ecolesDansFichier = true;
+					line = argumentEcole(line);
+					if (!ajouterEcole(nomVilleDEcole(line)))
+						throw new SyntaxeFichierInvalideException("École invalide : " + line);
 				}
-			}
-			else if (line.matches("ecole\\(.+\\)\\.?")) {
-				ecolesDansFichier = true;
-				line = line.split("ecole")[1];
-				st = new StringTokenizer(line, "()");
-				if (!ajouterEcole(st.nextToken())) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("École invalide : " + line);
+				else {
+					if ("".equals(line))
+						throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ligne vide");
+					else
+						throw new SyntaxeFichierInvalideException("Ligne inattendue : " + line);
 				}
 			}
-			else {
-				if ("".equals(line)) {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ligne vide");
-				} else {
-					contenu.close();
-					throw new SyntaxeFichierInvalideException("Ligne inattendue : " + line);
+		} catch (SyntaxeFichierInvalideException | RuntimeException e) {
+			relierRoutes(fichier, routes, nombreRoutes, premiereRoute);
+			throw e;
+		}
+		metriques.ajouterLecture(lignesLues, System.nanoTime() - debutLecture);
+
+		if (premiereRoute != 0) {
+			long debutConstruction = System.nanoTime();
+			relierRoutes(fichier, routes, nombreRoutes, premiereRoute);
+			ajouterAEmpreinte(sommeA, sommeB);
+			metriques.ajouterConstructionGraphe(System.nanoTime() - debutConstruction);
+		}
+	}
+
+	/**
+	 * Ajoute aux listes d'adjacence les routes lues par {@link #lireSequentiellement(File)},
+	 * dans l'ordre du fichier, sans mettre à jour l'empreinte du graphe.
+	 * 
+	 * @param fichier : le fichier lu, relu seulement pour le message d'erreur d'une route en double.
+	 * @param routes : les indices des villes des routes, deux par route.
+	 * @param nombreRoutes : le nombre de routes.
+	 * @param premiereRoute : le numéro de la ligne de la première route, les routes étant sur
+	 * des lignes consécutives.
+	 * 
+	 * @throws SyntaxeFichierInvalideException : lancée pour la première route en double.
+	 */
+	private void relierRoutes(File fichier, int[] routes, int nombreRoutes, long premiereRoute)
+			throws IOException, SyntaxeFichierInvalideException {
+		if (nombreRoutes == 0)
+			return;
+		if (listesAdjacence == null)
+			creerListesAdjacence();
+		for (int k = 0; k < nombreRoutes; k++) {
+			if (!relierVilles(routes[2 * k], routes[2 * k + 1])) {
+				System.out.println("Erreur : cette route existe déjà");
+				try (BufferedReader contenu = new BufferedReader(new FileReader(fichier))) {
+					for (long i = 1; i < premiereRoute + k; i++)
+						contenu.readLine();
+					throw new SyntaxeFichierInvalideException("Route invalide : " + contenu.readLine());
 				}
 			}
-		} while (!stop);
+		}
+	}
+
+	/**
+	 * Vérifie la contrainte d'accessibilité : chaque ville doit posséder une école ou être
+	 * voisine d'une ville qui possède une école.
+	 * 
+	 * @return true si toutes les villes respectent la contrainte, false sinon.
+	 */
+	public boolean respecteAccessibilite() {
+		return Validation.respecteAccessibilite(this);
+	}
 
-		contenu.close();
+	/**
+	 * Vérifie la contrainte d'accessibilité pour toutes les villes, en parallèle.
+	 * 
+	 * @return la liste des noms des villes qui ne possèdent pas d'école et ne sont voisines
+	 * d'aucune ville qui en possède une (vide si la configuration est valide).
+	 */
+	public ArrayList<String> getVillesNonCouvertes() {
+		BitSet nonCouvertes = Validation.villesNonCouvertes(this);
+		ArrayList<String> noms = new ArrayList<String>(nonCouvertes.cardinality());
+		for (int i = nonCouvertes.nextSetBit(0); i >= 0; i = nonCouvertes.nextSetBit(i + 1))
+			noms.add(villes.get(i).getNom());
+		return noms;
+	}
 
-		nombreDeVilles = villes.size();
-		if (nombreDeVilles == 0) {
-			throw new SyntaxeFichierInvalideException("Il faut au moins une ville");
+	/**
+	 * Crée une liste d'adjacence vide pour chaque ville.
+	 */
+	void creerListesAdjacence() {
+		listesAdjacence = new int[villes.size()][];
+		degres = new int[villes.size()];
+	}
+
+	/**
+	 * @return true si les listes d'adjacence ont été créées, c'est-à-dire si une route a été lue.
+	 */
+	boolean possedeListesAdjacence() {
+		return listesAdjacence != null;
+	}
+
+	/**
+	 * Relie par une route deux villes données par leur indice, si elles ne le sont pas déjà.
+	 * L'empreinte du graphe n'est pas mise à jour.
+	 * 
+	 * @param indice1 : l'indice de la première ville.
+	 * @param indice2 : l'indice de la deuxième ville.
+	 * @return true si la route est ajoutée, false si elle existait déjà.
+	 */
+	boolean relierVilles(int indice1, int indice2) {
+		if (sontVoisines(indice1, indice2))
+			return false;
+		ajouterVoisin(indice1, indice2);
+		ajouterVoisin(indice2, indice1);
+		return true;
+	}
+
+	/**
+	 * @param indice1 : l'indice de la première ville.
+	 * @param indice2 : l'indice de la deuxième ville.
+	 * @return true si les deux villes sont reliées par une route. Seule la plus courte
+	 * des deux listes d'adjacence est parcourue.
+	 */
+	private boolean sontVoisines(int indice1, int indice2) {
+		if (degres[indice1] > degres[indice2]) {
+			int indice = indice1;
+			indice1 = indice2;
+			indice2 = indice;
 		}
+		for (int k = 0; k < degres[indice1]; k++)
+			if (listesAdjacence[indice1][k] == indice2)
+				return true;
+		return false;
+	}
 
-		if (matriceAdjacence == null) // S'il n'y a aucune route dans le fichier
-			matriceAdjacence = new boolean[nombreDeVilles][nombreDeVilles];
+	/**
+	 * Retire une ville de la liste d'adjacence d'une autre, en la remplaçant par la dernière
+	 * ville de la liste.
+	 * 
+	 * @param indice : l'indice de la ville dont la liste est modifiée.
+	 * @param voisin : l'indice de la ville à retirer de la liste, qui doit y être présente.
+	 */
+	private void retirerVoisin(int indice, int voisin) {
+		int[] liste = listesAdjacence[indice];
+		int k = 0;
+		while (liste[k] != voisin)
+			k++;
+		liste[k] = liste[--degres[indice]];
+	}
 
-		for (int i = 0; i < nombreDeVilles; i++) { // Vérifie la contrainte d'accessibilité
-			if (villes.get(i).getPossedeEcole())
-				continue;
+	/**
+	 * Ajoute ou retire une route entre deux villes données par leur indice, en mettant à jour
+	 * l'empreinte du graphe et les routes modifiées depuis la dernière sauvegarde.
+	 * 
+	 * @param indice1 : l'indice de la première ville.
+	 * @param indice2 : l'indice de la deuxième ville.
+	 * @param ajout : true pour ajouter la route, false pour la retirer.
+	 * @return true si la route a été ajoutée ou retirée, false si elle existait déjà
+	 * (ajout) ou n'existait pas (retrait).
+	 */
+	boolean modifierRoute(int indice1, int indice2, boolean ajout) {
+		if (ajout) {
+			if (!relierVilles(indice1, indice2))
+				return false;
+		} else {
+			if (!sontVoisines(indice1, indice2))
+				return false;
+			retirerVoisin(indice1, indice2);
+			retirerVoisin(indice2, indice1);
+		}
 
-			boolean villeRespecteAccessibilite = false;
-			for (int j = 0; j < nombreDeVilles; j++)
-				if (matriceAdjacence[i][j])
-					if (villes.get(j).getPossedeEcole()) {
-						villeRespecteAccessibilite = true;
-						break;
-					}
+		String nomVille1 = villes.get(indice1).getNom(), nomVille2 = villes.get(indice2).getNom();
+		long signe = ajout ? 1 : -1;
+		empreinteA += signe * hacherRoute(GRAINE_A, nomVille1, nomVille2);
+		empreinteB += signe * hacherRoute(GRAINE_B, nomVille1, nomVille2);
 
-			if (!villeRespecteAccessibilite) {
-				System.out.println("La configuration des écoles est invalide. Utilisation de la solution naïve.");
-				solutionNaive();
-				break;
-			}
+		if (routesModifiees != null) {
+			Long cle = cleRoute(indice1, indice2);
+			if (routesModifiees.containsKey(cle)) // Modification inverse d'une précédente
+				routesModifiees.remove(cle);
+			else
+				routesModifiees.put(cle, ajout);
+		}
+		return true;
+	}
+
+	/**
+	 * @return une clé identifiant la route entre deux villes, quel que soit leur ordre.
+	 */
+	private static long cleRoute(int indice1, int indice2) {
+		return ((long) Math.min(indice1, indice2) << 32) | Math.max(indice1, indice2);
+	}
+
+	/**
+	 * Ajoute une ville à la fin de la liste d'adjacence d'une autre, en agrandissant
+	 * la liste si elle est pleine.
+	 * 
+	 * @param indice : l'indice de la ville dont la liste est modifiée.
+	 * @param voisin : l'indice de la ville à ajouter à la liste.
+	 */
+	private void ajouterVoisin(int indice, int voisin) {
+		int[] liste = listesAdjacence[indice];
+		if (liste == null)
+			liste = listesAdjacence[indice] = new int[4];
+		else if (degres[indice] == liste.length)
+			liste = listesAdjacence[indice] = Arrays.copyOf(liste, 2 * liste.length);
+		liste[degres[indice]++] = voisin;
+	}
+
+	/**
+	 * Ajoute une ville sans école à la fin de la liste des villes, en mettant à jour
+	 * l'index des noms et l'empreinte du graphe.
+	 * 
+	 * @param nomVille : le nom de la ville.
+	 */
+	void ajouterVille(String nomVille) {
+		indicesVilles.putIfAbsent(nomVille, villes.size());
+		villes.add(new Ville(nomVille));
+		empreinteA += hacher(GRAINE_A, 'v', nomVille, "");
+		empreinteB += hacher(GRAINE_B, 'v', nomVille, "");
+	}
+
+	/**
+	 * Ajoute une ville sans route ni école à une agglomération déjà chargée, en agrandissant
+	 * au besoin les tableaux des listes d'adjacence.
+	 * 
+	 * @param nomVille : le nom de la ville.
+	 * @return l'indice de la nouvelle ville.
+	 */
+	int ajouterNouvelleVille(String nomVille) {
+		if (nombreDeVilles == listesAdjacence.length) {
+			int capacite = Math.max(4, 2 * nombreDeVilles);
+			listesAdjacence = Arrays.copyOf(listesAdjacence, capacite);
+			degres = Arrays.copyOf(degres, capacite);
 		}
+		ajouterVille(nomVille);
+		return nombreDeVilles++;
+	}
+
+	/**
+	 * Retire la dernière ville ajoutée par {@link #ajouterNouvelleVille(String)}, qui ne doit
+	 * plus avoir de route.
+	 */
+	void retirerDerniereVille() {
+		int indice = --nombreDeVilles;
+		String nomVille = villes.remove(indice).getNom();
+		indicesVilles.remove(nomVille, indice);
+		listesAdjacence[indice] = null;
+		degres[indice] = 0;
+		empreinteA -= hacher(GRAINE_A, 'v', nomVille, "");
+		empreinteB -= hacher(GRAINE_B, 'v', nomVille, "");
 	}
 
 	/**
@@ -221,9 +584,7 @@ public final class Agglomeration {
 		if (indice1 < 0 || indice2 < 0)
 			return false;
 
-		if (!matriceAdjacence[indice1][indice2]) {
-			matriceAdjacence[indice1][indice2] = true;
-			matriceAdjacence[indice2][indice1] = true;
+		if (modifierRoute(indice1, indice2, true)) {
 			return true;
 		} else {
 			System.out.println("Erreur : cette route existe déjà");
@@ -240,17 +601,30 @@ public final class Agglomeration {
 	 * @return true si l'école est ajoutée, et false si elle était déjà présente.
 	 */
 	public boolean ajouterEcole(String nomVille) {
-		Ville ville = getVille(nomVille);
-		if (ville == null)
-			return false;
+		return afficherErreurs(tenterAjoutEcole(nomVille));
+	}
 
-		if (!ville.getPossedeEcole()) {
-			ville.setPossedeEcole(true);
-			return true;
-		} else {
-			System.out.println("Erreur : cette ville possède déja une école");
-			return false;
+	/**
+	 * Ajoute une école comme {@link #ajouterEcole(String)}, mais retourne les erreurs au lieu
+	 * de les afficher (utilisée par le {@link Serveur} pour les renvoyer au client).
+	 * 
+	 * @param nomVille : le nom de la ville.
+	 * 
+	 * @return les raisons pour lesquelles l'école n'a pas été ajoutée, vide si elle l'a été.
+	 */
+	List<String> tenterAjoutEcole(String nomVille) {
+		ArrayList<String> erreurs = new ArrayList<String>();
+		int indice = chercherIndiceVille(nomVille);
+		if (indice < 0) {
+			erreurs.add("la ville " + nomVille + " n'existe pas");
+			return erreurs;
 		}
+
+		if (!possedeEcole(indice))
+			setEcole(indice, true);
+		else
+			erreurs.add("cette ville possède déja une école");
+		return erreurs;
 	}
 
 	/**
@@ -261,70 +635,188 @@ public final class Agglomeration {
 	 * voisins.
 	 * 
 	 * @param nomVille : le nom de la ville.
+	 * 
+	 * @return true si l'école est retirée, et false sinon.
 	 */
-	public void retirerEcole(String nomVille) {
-		Ville ville = getVille(nomVille);
-		if (ville == null)
-			return;
+	public boolean retirerEcole(String nomVille) {
+		return afficherErreurs(tenterRetraitEcole(nomVille));
+	}
+
+	/**
+	 * Retire une école comme {@link #retirerEcole(String)}, mais retourne les erreurs au lieu
+	 * de les afficher.
+	 * 
+	 * @param nomVille : le nom de la ville.
+	 * 
+	 * @return les raisons pour lesquelles l'école n'a pas été retirée, vide si elle l'a été.
+	 */
+	List<String> tenterRetraitEcole(String nomVille) {
+		ArrayList<String> erreurs = new ArrayList<String>();
+		int indice = chercherIndiceVille(nomVille);
+		if (indice < 0) {
+			erreurs.add("la ville " + nomVille + " n'existe pas");
+			return erreurs;
+		}
+		Ville ville = villes.get(indice);
 		if (!ville.getPossedeEcole()) {
-			System.out.println("Erreur : cette ville est déjà sans école");
-			return;
+			erreurs.add("cette ville est déjà sans école");
+			return erreurs;
 		}
 
-		int indice = getIndiceVille(nomVille);
-
 		boolean voisinPossedeEcole = false;
-		for (int i = 0; i < nombreDeVilles; i++)
-			if (matriceAdjacence[indice][i] && villes.get(i).getPossedeEcole()) {
+		for (int k = 0; k < degres[indice]; k++)
+			if (villes.get(listesAdjacence[indice][k]).getPossedeEcole()) {
 				voisinPossedeEcole = true;
 				break;
 			}
 		if (!voisinPossedeEcole) {
-			System.out.println("Erreur : la ville " + nomVille + " n'a aucun voisin qui possède une école");
-			return;
+			erreurs.add("la ville " + nomVille + " n'a aucun voisin qui possède une école");
+			return erreurs;
 		}
 
-		boolean tousLesVoisinsAurontAccessibiliteApres = true;
-		ville.setPossedeEcole(false); // On enlève l'école temporairement pour tester
-		for (int i = 0; i < nombreDeVilles; i++) {
-			if (matriceAdjacence[indice][i]) {
-				if (villes.get(i).getPossedeEcole())
-					continue;
-
-				boolean voisinDeVoisinPossedeEcole = false;
-				for (int j = 0; j < nombreDeVilles; j++)
-					if (matriceAdjacence[i][j] && villes.get(j).getPossedeEcole()) {
-						voisinDeVoisinPossedeEcole = true;
-						break;
-					}
-				if (!voisinDeVoisinPossedeEcole) {
-					tousLesVoisinsAurontAccessibiliteApres = false;
-					System.out.println("Erreur : la ville " + villes.get(i).getNom()
-							+ " n'aurait plus d'école sans l'école de " + ville.getNom());
-				}
-			}
+		setEcole(indice, false); // On enlève l'école temporairement pour tester
+		for (int k = 0; k < degres[indice]; k++) {
+			int i = listesAdjacence[indice][k];
+			if (!Validation.estCouverte(this, i))
+				erreurs.add("la ville " + villes.get(i).getNom()
+						+ " n'aurait plus d'école sans l'école de " + ville.getNom());
 		}
-		if (!tousLesVoisinsAurontAccessibiliteApres)
-			ville.setPossedeEcole(true);
+		if (!erreurs.isEmpty())
+			setEcole(indice, true);
+		return erreurs;
+	}
+
+	/**
+	 * Affiche une ligne par erreur.
+	 * 
+	 * @param erreurs : les erreurs à afficher.
+	 * @return true s'il n'y a aucune erreur.
+	 */
+	private static boolean afficherErreurs(List<String> erreurs) {
+		for (String erreur : erreurs)
+			System.out.println("Erreur : " + erreur);
+		return erreurs.isEmpty();
 	}
 
 	/**
 	 * Affiche sur une ligne le nom des villes qui possèdent une école.
 	 */
 	public void afficherEcoles() {
-		System.out.print("Villes qui possèdent des écoles | ");
+		afficher(this::afficherEcoles, new Rapport());
+	}
+
+	/**
+	 * Écrit sur une ligne du rapport le nom des villes qui possèdent une école, en respectant
+	 * la limite et le préfixe du rapport. "..." termine la ligne si la limite est atteinte.
+	 * 
+	 * @param rapport : le rapport dans lequel écrire.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public void afficherEcoles(Rapport rapport) throws IOException {
+		rapport.nouvelleSection();
+		rapport.ecrire("Villes qui possèdent des écoles | ");
+		for (Ville ville : villes) {
+			if (ville.getPossedeEcole() && rapport.accepter(ville.getNom()))
+				rapport.ecrire(ville.getNom()).ecrire(" | ");
+			else if (rapport.estTronque())
+				break;
+		}
+		if (rapport.estTronque())
+			rapport.ecrire("...");
+		rapport.finDeLigne();
+	}
+
+	/**
+	 * Interface des méthodes d'affichage qui écrivent dans un {@link Rapport}.
+	 */
+	private interface Affichage {
+		void afficher(Rapport rapport) throws IOException;
+	}
+
+	/**
+	 * Lance un affichage dans le rapport donné puis l'envoie à sa sortie, en affichant
+	 * l'erreur éventuelle.
+	 * 
+	 * @param affichage : la méthode d'affichage.
+	 * @param rapport : le rapport, fermé à la fin.
+	 */
+	private static void afficher(Affichage affichage, Rapport rapport) {
+		try (rapport) {
+			affichage.afficher(rapport);
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'affichage : " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * @return la liste des noms des villes qui possèdent une école.
+	 */
+	public ArrayList<String> getEcoles() {
+		ArrayList<String> ecoles = new ArrayList<String>(0);
 		for (Ville ville : villes)
 			if (ville.getPossedeEcole())
-				System.out.print(ville.getNom() + " | ");
-		System.out.println("");
+				ecoles.add(ville.getNom());
+		return ecoles;
+	}
+
+	/**
+	 * @return le nombre de villes de cette agglomération.
+	 */
+	@Override
+	public int getNombreDeVilles() {
+		return nombreDeVilles;
+	}
+
+	/**
+	 * @return le verrou lecture-écriture à prendre pour partager cette agglomération
+	 * entre plusieurs threads.
+	 */
+	public ReentrantReadWriteLock getVerrou() {
+		return verrou;
+	}
+
+	@Override
+	public int getDegre(int ville) {
+		return degres[ville];
+	}
+
+	@Override
+	public int getVoisin(int ville, int rang) {
+		return listesAdjacence[ville][rang];
+	}
+
+	@Override
+	public String getNomVille(int ville) {
+		return villes.get(ville).getNom();
+	}
+
+	@Override
+	public boolean possedeEcole(int ville) {
+		return villes.get(ville).getPossedeEcole();
+	}
+
+	/**
+	 * Met ou retire une école dans une ville, sans vérification, en notant la modification
+	 * pour le prochain fichier delta ({@link #ecrireModifications(PrintWriter)}). Toutes les
+	 * modifications des écoles passent par cette méthode.
+	 */
+	@Override
+	public void setEcole(int ville, boolean ecole) {
+		Ville v = villes.get(ville);
+		if (v.getPossedeEcole() == ecole)
+			return;
+		v.setPossedeEcole(ecole);
+
+		if (ecolesModifiees != null && ecolesModifiees.remove(ville) == null) // Sinon, retour à l'état sauvegardé
+			ecolesModifiees.put(ville, ecole);
 	}
 
 	/**
 	 * Remet une école dans chaque ville.
 	 */
 	public void solutionNaive() {
-		for (Ville ville : villes)
-			ville.setPossedeEcole(true);
+		for (int i = 0; i < nombreDeVilles; i++)
+			setEcole(i, true);
 	}
 
 	/**
@@ -332,15 +824,34 @@ public final class Agglomeration {
 	 * est connectée par une route, tout ceci sur une seule ligne.
 	 */
 	public void afficherVoisins() {
-		System.out.print("Voisins de chaque ville | ");
+		afficher(this::afficherVoisins, new Rapport());
+	}
+
+	/**
+	 * Écrit sur une ligne du rapport, pour chaque ville, son nom suivi des noms des villes
+	 * auxquelles elle est connectée par une route, en respectant la limite et le préfixe du
+	 * rapport. Seules les routes existantes sont parcourues.
+	 * 
+	 * @param rapport : le rapport dans lequel écrire.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public void afficherVoisins(Rapport rapport) throws IOException {
+		rapport.nouvelleSection();
+		rapport.ecrire("Voisins de chaque ville | ");
 		for (int i = 0; i < nombreDeVilles; i++) {
-			System.out.print(villes.get(i).getNom() + " : ");
-			for (int j = 0; j < nombreDeVilles; j++)
-				if (matriceAdjacence[i][j])
-					System.out.print(villes.get(j).getNom() + ", ");
-			System.out.print("| ");
+			if (!rapport.accepter(villes.get(i).getNom())) {
+				if (rapport.estTronque())
+					break;
+				continue;
+			}
+			rapport.ecrire(villes.get(i).getNom()).ecrire(" : ");
+			for (int k = 0; k < degres[i]; k++)
+				rapport.ecrire(villes.get(listesAdjacence[i][k]).getNom()).ecrire(", ");
+			rapport.ecrire("| ");
 		}
-		System.out.println("");
+		if (rapport.estTronque())
+			rapport.ecrire("...");
+		rapport.finDeLigne();
 	}
 
 	/**
@@ -351,253 +862,405 @@ public final class Agglomeration {
 	 * @return l'indice de la ville, ou -1 si la ville nommée nomVille n'existe pas.
 	 */
 	private int getIndiceVille(String nomVille) {
-		Ville ville = getVille(nomVille);
-		if (ville == null)
+		Integer indice = indicesVilles.get(nomVille);
+		if (indice == null) {
+			System.out.println("Erreur : la ville " + nomVille + " n'existe pas");
 			return -1;
-		return villes.indexOf(ville);
+		}
+		return indice;
 	}
 
 	/**
-	 * Retourne la ville nommée nomVille dans les villes de cette agglomération.
-	 * Affiche une erreur et retourne null si la ville n'existe pas.
+	 * Donne l'indice d'une ville sans afficher d'erreur si elle n'existe pas.
 	 * 
 	 * @param nomVille : le nom de la ville.
-	 * @return la ville nommée nomVille, ou null si elle n'existe pas.
+	 * @return l'indice de la ville, ou -1 si la ville nommée nomVille n'existe pas.
 	 */
-	private Ville getVille(String nomVille) {
-		for (Ville ville : villes)
-			if (ville.getNom().equals(nomVille))
-				return ville;
-		System.out.println("Erreur : la ville " + nomVille + " n'existe pas");
-		return null;
+	int chercherIndiceVille(String nomVille) {
+		Integer indice = indicesVilles.get(nomVille);
+		return indice == null ? -1 : indice;
 	}
 
 	/**
-	 * Permet de débugger le programme en affichant les données de cette agglomération :
-	 * liste des villes, matrice d'adjacence et écoles.
+	 * Graines des deux hachages qui composent l'empreinte du graphe.
 	 */
-	public void debug() {
-		System.out.println("Villes :");
-		for (int i = 0; i < villes.size(); i++) {
-			System.out.println("Ville " + i + " : " + villes.get(i).getNom());
-		}
+	static final long GRAINE_A = 0xcbf29ce484222325L, GRAINE_B = 0x9e3779b97f4a7c15L;
 
-		System.out.println("\n\n\nMatrice d'adjacence : \n");
-		for (int i = 0; i < villes.size(); i++) {
-			for (int j = 0; j < villes.size(); j++) {
-				if (matriceAdjacence[i][j])
-					System.out.print(1 + " ");
-				else
-					System.out.print(0 + " ");
-				if (j == villes.size() - 1) {
-					System.out.print("\n\n");
-				}
-			}
-		}
-
-		afficherEcoles();
+	/**
+	 * Hache un élément du graphe (ville ou route) sur 64 bits : FNV-1a sur les caractères
+	 * du type et des deux noms, puis mélange final des bits (celui de SplitMix64) pour que
+	 * la somme de ces hachages reste bien répartie.
+	 * 
+	 * @param graine : la valeur de départ du hachage.
+	 * @param type : 'v' pour une ville, 'r' pour une route, 'o' pour l'ordre des villes.
+	 * @param nom1 : le nom de la ville, ou le plus petit nom de la route.
+	 * @param nom2 : "" pour une ville, ou le plus grand nom de la route.
+	 * @return le hachage de l'élément.
+	 */
+	private static long hacher(long graine, char type, String nom1, String nom2) {
+		long h = (graine ^ type) * 0x100000001b3L;
+		for (int i = 0; i < nom1.length(); i++)
+			h = (h ^ nom1.charAt(i)) * 0x100000001b3L;
+		h = (h ^ 0x10000) * 0x100000001b3L; // Séparateur, différent de tout caractère
+		for (int i = 0; i < nom2.length(); i++)
+			h = (h ^ nom2.charAt(i)) * 0x100000001b3L;
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
 	}
 
 	/**
-	 * Modifie la configuration des écoles de l'agglomération pour donner une des solutions
-	 * optimales au problème.
+	 * Hache une route de la même façon quel que soit l'ordre de ses deux villes.
 	 * 
-	 * On commence par enlever toutes les écoles. Pour chaque ville, on calcule son nombre
-	 * de voisins (degré). On met une école dans toutes les villes de degré 0. Ensuite, tant
-	 * que toutes les villes ne remplissent pas la contrainte d'accessibilité, on trouve parmi
-	 * les villes de plus grand degré ne possédant pas d'école celle pour laquelle lui ajouter
-	 * une école va faire respecter la contrainte d'accessibilité au plus grand nombre
-	 * de villes voisines.
+	 * @param graine : la valeur de départ du hachage.
+	 * @param nomVille1 : le nom de la première ville.
+	 * @param nomVille2 : le nom de la deuxième ville.
+	 * @return le hachage de la route.
 	 */
-	public void solutionOptimale() {
-		for (int i = 0; i < villes.size(); i++) { // Enlève toutes les écoles
-			villes.get(i).setPossedeEcole(false);
-		}
-
-		/**
-		 * Classe interne qui stocke pour chaque ville toute les informations
-		 * nécessaires au fonctionnement de l'algorithme.
-		 */
-		class Criteres {
-			/**
-			 * Nombre de villes voisines de la ville.
-			 */
-			private int degre;
-			
-			/**
-			 * true si cette ville est voisine d'une ville qui possède une école, false sinon.
-			 */
-			private boolean couverte;
-			
-			/**
-			 * true si cette ville possède une école, false sinon.
-			 */
-			private boolean colore = false;
-
-			public Criteres(int degre) {
-				setDegre(degre);
-				this.setColore(false);
-				this.setCouverte(false);
-			}
-
-			public int getDegre() {
-				return degre;
-			}
+	static long hacherRoute(long graine, String nomVille1, String nomVille2) {
+		if (nomVille1.compareTo(nomVille2) > 0)
+			return hacher(graine, 'r', nomVille2, nomVille1);
+		return hacher(graine, 'r', nomVille1, nomVille2);
+	}
 
-			public void setDegre(int degre) {
-				this.degre = degre;
-			};
+	/**
+	 * Donne l'empreinte de l'ordre des villes d'un graphe, avec les mêmes hachages que
+	 * l'empreinte du graphe. Chaque ville est hachée avec le hachage de la ville précédente
+	 * comme graine, au lieu d'une somme : le résultat dépend donc de l'ordre des villes.
+	 *
+	 * @param graphe : le graphe.
+	 * @return l'empreinte sous forme de 32 chiffres hexadécimaux.
+	 */
+	static String getEmpreinteOrdre(Graphe graphe) {
+		long ordreA = GRAINE_A, ordreB = GRAINE_B;
+		int nombreDeVilles = graphe.getNombreDeVilles();
+		for (int i = 0; i < nombreDeVilles; i++) {
+			String nomVille = graphe.getNomVille(i);
+			ordreA = hacher(ordreA, 'o', nomVille, "");
+			ordreB = hacher(ordreB, 'o', nomVille, "");
+		}
+		return String.format("%016x%016x", ordreA, ordreB);
+	}
 
-			public boolean isCouverte() {
-				return couverte;
-			}
+	/**
+	 * Ajoute à l'empreinte du graphe des hachages de routes calculés avec {@link #hacherRoute},
+	 * pour les routes ajoutées avec {@link #relierVilles(int, int)}.
+	 * 
+	 * @param sommeA : la somme des hachages avec la graine {@link #GRAINE_A}.
+	 * @param sommeB : la somme des hachages avec la graine {@link #GRAINE_B}.
+	 */
+	void ajouterAEmpreinte(long sommeA, long sommeB) {
+		empreinteA += sommeA;
+		empreinteB += sommeB;
+	}
 
-			public void setCouverte(boolean couverte) {
-				this.couverte = couverte;
-			}
+	/**
+	 * Donne l'empreinte de la structure du graphe : elle ne dépend que des noms des villes
+	 * et des routes qui les relient, pas de leur ordre dans le fichier ni des écoles. Deux
+	 * agglomérations de même empreinte ont donc les mêmes solutions.
+	 * 
+	 * @return l'empreinte sous forme de 32 chiffres hexadécimaux.
+	 */
+	public String getEmpreinte() {
+		return String.format("%016x%016x", empreinteA, empreinteB);
+	}
 
-			public boolean isColore() {
-				return colore;
-			}
+	/**
+	 * Nombre de villes au-delà duquel {@link #debug(Rapport)} écrit les listes d'adjacence
+	 * au lieu de la matrice d'adjacence, dont chaque ligne a une case par ville.
+	 */
+	private static final int TAILLE_MAX_MATRICE = 64;
 
-			public void setColore(boolean colore) {
-				this.colore = colore;
-			}
+	/**
+	 * Permet de débugger le programme en affichant les données de cette agglomération :
+	 * liste des villes, matrice ou listes d'adjacence et écoles.
+	 */
+	public void debug() {
+		afficher(this::debug, new Rapport());
+	}
 
+	/**
+	 * Écrit dans le rapport les données de cette agglomération pour débugger le programme :
+	 * liste des villes, puis matrice d'adjacence (reconstruite ligne par ligne à partir des
+	 * listes d'adjacence) si l'agglomération a au plus {@link #TAILLE_MAX_MATRICE} villes, ou
+	 * sinon les indices des voisins de chaque ville, et enfin les écoles. La limite et le
+	 * préfixe du rapport s'appliquent à chacune de ces listes.
+	 * 
+	 * @param rapport : le rapport dans lequel écrire.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public void debug(Rapport rapport) throws IOException {
+		rapport.nouvelleSection();
+		rapport.ecrire("Villes :").finDeLigne();
+		for (int i = 0; i < nombreDeVilles; i++) {
+			if (rapport.accepter(villes.get(i).getNom()))
+				rapport.ecrire("Ville ").ecrire(Integer.toString(i)).ecrire(" : ").ecrire(villes.get(i).getNom())
+						.finDeLigne();
+			else if (rapport.estTronque())
+				break;
 		}
 
-		// Crée la liste des critères pour chaque ville (position du critère = position
-		// de la ville dans la liste des villes)
-		ArrayList<Criteres> criteres = new ArrayList<Criteres>(0);
-
-		// Liste des numéros de villes candidates pour avoir une école
-		ArrayList<Integer> candidates = new ArrayList<Integer>(0);
-
-		// Attribution du degré (nombre de villes relié avec une route) de chaque ville
+		rapport.nouvelleSection();
+		boolean matrice = nombreDeVilles <= TAILLE_MAX_MATRICE;
+		rapport.finDeLigne().finDeLigne().finDeLigne();
+		rapport.ecrire(matrice ? "Matrice d'adjacence : " : "Listes d'adjacence : ").finDeLigne().finDeLigne();
+		// Une ligne de la matrice, remise à "0 0 ... 0 " après chaque ville
+		char[] ligne = new char[matrice ? 2 * nombreDeVilles : 0];
+		for (int j = 0; j < ligne.length; j++)
+			ligne[j] = j % 2 == 0 ? '0' : ' ';
 		for (int i = 0; i < nombreDeVilles; i++) {
-			int res = 0;
-			for (int j = 0; j < nombreDeVilles; j++) {
-				if (matriceAdjacence[i][j])
-					res++;
+			if (!rapport.accepter(villes.get(i).getNom())) {
+				if (rapport.estTronque())
+					break;
+				continue;
 			}
-			Criteres c = new Criteres(res);
-			if (res == 0) {
-				c.setColore(true);
-				c.setCouverte(true);
-				ajouterEcole(villes.get(i).getNom());
+			if (matrice) {
+				for (int k = 0; k < degres[i]; k++)
+					ligne[2 * listesAdjacence[i][k]] = '1';
+				rapport.ecrire(new String(ligne)).finDeLigne().finDeLigne();
+				for (int k = 0; k < degres[i]; k++)
+					ligne[2 * listesAdjacence[i][k]] = '0';
+			} else {
+				rapport.ecrire("Ville ").ecrire(Integer.toString(i)).ecrire(" :");
+				for (int k = 0; k < degres[i]; k++)
+					rapport.ecrire(' ').ecrire(Integer.toString(listesAdjacence[i][k]));
+				rapport.finDeLigne();
 			}
-			criteres.add(c);
 		}
 
-		// Signal d'arrêt de la boucle
-		boolean stop = false;
-
-		// Partie concrète de l'algorithme
-		while (!stop) {
-
-			int toColor = 0; // Le numéro de la ville dans laquelle on va construire une école (la colorer),
-							 // initialement la ville 0
-			candidates.add(toColor);
-			// Parcourir la liste pour trouver les villes avec le plus de villes voisines
-			// (plus grand degré)
-			for (int i = 1; i < criteres.size(); i++) {
-				// Si la ville est déjà colorée, on passe
-				if (!criteres.get(i).isColore()) {
-					// 2 valeurs max donc apparition d'une autre candidate
-					if (criteres.get(i).getDegre() == criteres.get(toColor).getDegre()) {
-						candidates.add(i);
-					}
+		afficherEcoles(rapport);
+	}
 
-					// Si le max change, la liste est réinitialisée
-					if (criteres.get(i).getDegre() > criteres.get(toColor).getDegre()) {
-						toColor = i;
-						candidates.clear();
-						candidates.add(i);
-					}
-				}
-			}
+	/**
+	 * Modifie la configuration des écoles de l'agglomération pour donner une des solutions
+	 * optimales au problème. Équivalent à {@link #solutionOptimale(Progression)} sans délai
+	 * ni annulation.
+	 */
+	public void solutionOptimale() {
+		solutionOptimale(new Progression());
+	}
 
-			// Choisir la candidate qui pourrait couvrir le plus de villes non couvertes
-			int score = 0;
-			// À cause des points négatifs, il serait logique de mettre une marge (pire des
-			// cas : lié a n villes colorées)
-			int max = (-1) * villes.size();
-			toColor = 0;
-			for (int i = 0; i < candidates.size(); i++) {
-				for (int j = 0; j < nombreDeVilles; j++) {
-					if (matriceAdjacence[candidates.get(i)][j]) {
-						if (!criteres.get(j).isCouverte())
-							score++;
-						if (criteres.get(j).isColore())
-							score--; // Être relié à une ville colorée donne moins de crédibilité
-					}
-				}
-				if (score > max && !criteres.get(candidates.get(i)).isColore()) {
-					max = score;
-					toColor = i;
-				}
-				score = 0;
+	/**
+	 * Modifie la configuration des écoles de l'agglomération pour donner une des solutions
+	 * optimales au problème.
+	 * 
+	 * L'algorithme utilisé est décrit dans {@link SolveurGlouton}.
+	 * 
+	 * La solution est construite à part et n'est appliquée aux villes qu'une fois terminée :
+	 * cette méthode peut être lancée dans un autre thread, publie son avancement dans
+	 * l'argument progression et s'arrête dès que {@link Progression#estAnnulee()} est vrai,
+	 * en laissant alors les écoles de l'agglomération telles qu'elles étaient.
+	 * 
+	 * Si le graphe a déjà été résolu (voir {@link #getEmpreinte()}), la solution est reprise
+	 * du {@link CacheSolutions} sans relancer l'algorithme, après avoir vérifié qu'elle respecte
+	 * la contrainte d'accessibilité : une solution qui ne la respecte pas (fichier du cache
+	 * modifié ou périmé, collision d'empreintes) est retirée du cache et l'algorithme est lancé.
+	 * Sinon, la solution calculée est ajoutée au cache.
+	 * 
+	 * @param progression : l'objet dans lequel publier l'avancement et lire la demande d'arrêt.
+	 * 
+	 * @return true si la solution a été appliquée, false si l'algorithme a été annulé.
+	 */
+	public boolean solutionOptimale(Progression progression) {
+		String empreinte = getEmpreinte();
+		CacheSolutions.Entree entree = CacheSolutions.getInstance().chercher(empreinte);
+		if (entree != null) {
+			int nombreEcoles = appliquerEcoles(entree.getEcoles());
+			if (nombreEcoles >= 0) {
+				progression.publier(nombreDeVilles, nombreDeVilles, nombreEcoles);
+				return true;
 			}
+			System.out.println("La solution du cache n'est pas valide pour cette agglomération, elle est recalculée.");
+			CacheSolutions.getInstance().retirer(empreinte);
+		}
 
-			// Construire une école dans cette ville
+		long debutResolution = System.nanoTime();
+		BitSet ecoles = SolveurGlouton.resoudre(this, progression);
+		if (ecoles == null)
+			return false;
 
-			ajouterEcole(villes.get(candidates.get(toColor)).getNom());
-			criteres.get(candidates.get(toColor)).setColore(true);
-			criteres.get(candidates.get(toColor)).setCouverte(true);
+		// Applique la solution construite : les écoles ne sont modifiées qu'ici
+		SolveurGlouton.appliquer(this, ecoles);
+		CacheSolutions.getInstance().ajouter(empreinte, new CacheSolutions.Entree(getEcoles(), "solutionOptimale",
+				(System.nanoTime() - debutResolution) / 1_000_000));
+		return true;
+	}
 
-			// Marquer les villes voisines de la ville colorée comme couvertes
-			for (int i = 0; i < nombreDeVilles; i++) {
-				if (matriceAdjacence[candidates.get(toColor)][i]) {
-					criteres.get(i).setCouverte(true);
-				}
-			}
-			// Vider la liste des candidates
-			candidates.clear();
-			// Si les villes sont toutes couvertes, retourner le résultat
-			stop = true;
-			for (int i = 0; i < criteres.size(); i++) {
-				if (!criteres.get(i).isCouverte()) {
-					stop = false;
-				}
-			}
+	/**
+	 * Cherche une solution avec moins d'écoles que celle de {@link #solutionOptimale(Progression)},
+	 * avec la recherche locale de {@link SolveurAmelioration}, jusqu'à ce que l'argument
+	 * progression demande l'arrêt. La meilleure solution trouvée est alors appliquée.
+	 * 
+	 * @param progression : l'objet dans lequel publier l'avancement et lire la demande d'arrêt.
+	 * @param fichierReprise : le fichier dans lequel écrire régulièrement l'état de la recherche
+	 * et depuis lequel la reprendre s'il a été écrit pour ce graphe, ou null.
+	 * 
+	 * @return true si une solution a été appliquée, false si la recherche a été annulée avant
+	 * d'avoir une première solution.
+	 */
+	public boolean solutionAmelioree(Progression progression, File fichierReprise) {
+		BitSet ecoles = new SolveurAmelioration(this, getEmpreinte(), fichierReprise)
+				.resoudre(progression, Long.MAX_VALUE);
+		if (ecoles == null)
+			return false;
+		SolveurGlouton.appliquer(this, ecoles);
+		return true;
+	}
+
+	/**
+	 * Remplace la configuration des écoles par celle donnée : seules les villes nommées
+	 * possèdent une école. Rien n'est modifié si une des villes n'existe pas ou si la
+	 * configuration ne respecte pas la contrainte d'accessibilité.
+	 * 
+	 * @param nomsVilles : les noms des villes qui doivent posséder une école.
+	 * 
+	 * @return le nombre d'écoles de la configuration appliquée, ou -1 si elle n'a pas été appliquée.
+	 */
+	private int appliquerEcoles(List<String> nomsVilles) {
+		BitSet ecoles = new BitSet(nombreDeVilles);
+		for (String nomVille : nomsVilles) {
+			Integer indice = indicesVilles.get(nomVille);
+			if (indice == null)
+				return -1;
+			ecoles.set(indice);
 		}
 
+		BitSet ecolesAvant = new BitSet(nombreDeVilles);
+		for (int i = 0; i < nombreDeVilles; i++)
+			ecolesAvant.set(i, villes.get(i).getPossedeEcole());
+		SolveurGlouton.appliquer(this, ecoles);
+		if (!Validation.villesNonCouvertes(this).isEmpty()) {
+			SolveurGlouton.appliquer(this, ecolesAvant);
+			return -1;
+		}
+		return ecoles.cardinality();
 	}
 
 	/**
 	 * Sauvegarde les villes, routes et écoles de l'agglomération actuelle dans le fichier
 	 * donné en argument. Crée le fichier si nécessaire, et le vide avant d'écrire dedans
 	 * s'il était déjà présent. Si une erreur est rencontrée lors de la création ou de
+	 * l'écriture, celle-ci sera affichée. Le fichier contient toujours toute l'agglomération,
+	 * quel que soit son nom.
+	 * 
+	 * @param nomDeFichier : le chemin du fichier, relatif ou absolu, dans lequel écrire.
+	 * 
+	 * @return true si la sauvegarde a réussi, false sinon.
+	 */
+	public boolean sauvegardeFichier(String nomDeFichier) {
+		return sauvegarder(nomDeFichier, false);
+	}
+
+	/**
+	 * Écrit dans le fichier donné en argument seulement les modifications faites depuis le
+	 * chargement ou la dernière sauvegarde, au format lu par {@link #appliquerDelta(String)}
+	 * (voir {@link FichierDelta}). Crée le fichier si nécessaire, et le vide avant d'écrire
+	 * dedans s'il était déjà présent. Si une erreur est rencontrée lors de la création ou de
 	 * l'écriture, celle-ci sera affichée.
 	 * 
 	 * @param nomDeFichier : le chemin du fichier, relatif ou absolu, dans lequel écrire.
+	 * 
+	 * @return true si la sauvegarde a réussi, false sinon.
 	 */
-	public void sauvegardeFichier(String nomDeFichier) {
+	public boolean sauvegardeModifications(String nomDeFichier) {
+		return sauvegarder(nomDeFichier, true);
+	}
+
+	/**
+	 * Écrit toute l'agglomération ou seulement ses modifications dans le fichier donné, puis
+	 * note l'état actuel comme celui de la dernière sauvegarde.
+	 * 
+	 * @param nomDeFichier : le chemin du fichier, relatif ou absolu, dans lequel écrire.
+	 * @param modifications : true pour n'écrire que les modifications, false pour tout écrire.
+	 * 
+	 * @return true si la sauvegarde a réussi, false sinon.
+	 */
+	private boolean sauvegarder(String nomDeFichier, boolean modifications) {
+		long debutSauvegarde = System.nanoTime();
 		try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(nomDeFichier)))) {
-			for (Ville ville : villes) {
-				pw.print("ville(");
-				pw.print(ville.getNom());
-				pw.println(")");
-			}
+			if (modifications)
+				ecrireModifications(pw);
+			else
+				ecrireAgglomeration(pw);
+		} catch (IOException e) {
+			System.out.println("Erreur lors de la sauvegarde : " + e.getLocalizedMessage());
+			return false;
+		}
+		marquerSauvegarde();
+		Metriques.getInstance().ajouterSauvegarde(new File(nomDeFichier).length(),
+				System.nanoTime() - debutSauvegarde);
+		return true;
+	}
 
-			for (int i = 0; i < nombreDeVilles - 1; i++)
-				for (int j = i + 1; j < nombreDeVilles; j++)
-					if (matriceAdjacence[i][j]) {
-						pw.print("route(");
-						pw.print(villes.get(i).getNom());
-						pw.print(",");
-						pw.print(villes.get(j).getNom());
-						pw.println(")");
-					}
+	/**
+	 * Note l'état actuel de l'agglomération comme celui de la dernière sauvegarde.
+	 */
+	private void marquerSauvegarde() {
+		nombreDeVillesSauvegardees = nombreDeVilles;
+		routesModifiees = new LinkedHashMap<Long, Boolean>();
+		ecolesModifiees = new LinkedHashMap<Integer, Boolean>();
+	}
 
-			for (Ville ville : villes)
-				if (ville.getPossedeEcole()) {
-					pw.print("ecole(");
-					pw.print(ville.getNom());
+	/**
+	 * Écrit les modifications faites depuis la dernière sauvegarde : villes ajoutées, puis
+	 * routes ajoutées ou retirées dans l'ordre où elles l'ont été, puis écoles ajoutées ou
+	 * retirées dans l'ordre de leur première modification. La durée ne dépend que du nombre
+	 * de modifications, pas de la taille de l'agglomération.
+	 * 
+	 * @param pw : le flux dans lequel écrire.
+	 */
+	private void ecrireModifications(PrintWriter pw) {
+		for (int i = nombreDeVillesSauvegardees; i < nombreDeVilles; i++) {
+			pw.print("+ville(");
+			pw.print(villes.get(i).getNom());
+			pw.println(")");
+		}
+
+		for (Map.Entry<Long, Boolean> route : routesModifiees.entrySet()) {
+			long cle = route.getKey();
+			pw.print(route.getValue() ? "+route(" : "-route(");
+			pw.print(villes.get((int) (cle >>> 32)).getNom());
+			pw.print(",");
+			pw.print(villes.get((int) cle).getNom());
+			pw.println(")");
+		}
+
+		for (Map.Entry<Integer, Boolean> ecole : ecolesModifiees.entrySet()) {
+			pw.print(ecole.getValue() ? "+ecole(" : "-ecole(");
+			pw.print(villes.get(ecole.getKey()).getNom());
+			pw.println(")");
+		}
+	}
+
+	/**
+	 * Écrit toutes les villes, routes et écoles de l'agglomération.
+	 * 
+	 * @param pw : le flux dans lequel écrire.
+	 */
+	private void ecrireAgglomeration(PrintWriter pw) {
+		for (Ville ville : villes) {
+			pw.print("ville(");
+			pw.print(ville.getNom());
+			pw.println(")");
+		}
+
+		for (int i = 0; i < nombreDeVilles; i++)
+			for (int k = 0; k < degres[i]; k++) {
+				int j = listesAdjacence[i][k];
+				if (i < j) { // Chaque route n'est écrite qu'une fois
+					pw.print("route(");
+					pw.print(villes.get(i).getNom());
+					pw.print(",");
+					pw.print(villes.get(j).getNom());
 					pw.println(")");
 				}
-		} catch (IOException e) {
-			System.out.println("Erreur lors de la sauvegarde : " + e.getLocalizedMessage());
-		}
+			}
+
+		for (Ville ville : villes)
+			if (ville.getPossedeEcole()) {
+				pw.print("ecole(");
+				pw.print(ville.getNom());
+				pw.println(")");
+			}
 	}
 }
@@ -0,0 +1,259 @@
+package projet_poo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ceci est une classe singleton qui garde les solutions déjà calculées par
+ * {@link Agglomeration#solutionOptimale(Progression)}, associées à l'empreinte du graphe
+ * résolu ({@link Agglomeration#getEmpreinte()}). Une agglomération déjà résolue, même
+ * avec ses villes et routes dans un autre ordre, est ainsi résolue par une simple lecture.
+ *
+ * Les entrées sont gardées en mémoire dans une LinkedHashMap en ordre d'accès : au-delà de
+ * {@link #CAPACITE} entrées, la moins récemment utilisée est supprimée. Si un répertoire
+ * est donné avec {@link #setRepertoire(File)}, chaque entrée y est aussi écrite dans un
+ * fichier "empreinte.solution", relu lorsque l'entrée n'est plus en mémoire. L'empreinte est
+ * aussi écrite dans le fichier, et un fichier dont l'empreinte ne correspond pas à son nom
+ * est ignoré. Le cache ne vérifie pas les solutions elles-mêmes : c'est à l'appelant de le
+ * faire et de retirer avec {@link #retirer(String)} une solution invalide.
+ * Les méthodes sont synchronized car le cache est partagé par les threads du {@link Serveur}.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class CacheSolutions {
+
+	/**
+	 * Nombre maximal de solutions gardées en mémoire.
+	 */
+	public static final int CAPACITE = 32;
+
+	/**
+	 * Attribut d'une classe singleton : unique instance de la classe CacheSolutions.
+	 */
+	private static CacheSolutions INSTANCE;
+
+	/**
+	 * Une solution gardée dans le cache : les noms des villes qui possèdent une école
+	 * et des informations sur le calcul qui l'a produite.
+	 */
+	public static final class Entree {
+
+		/**
+		 * Les noms des villes qui possèdent une école dans la solution.
+		 */
+		private final List<String> ecoles;
+
+		/**
+		 * Le nom de l'algorithme qui a calculé la solution.
+		 */
+		private final String solveur;
+
+		/**
+		 * La durée du calcul de la solution, en millisecondes.
+		 */
+		private final long dureeMs;
+
+		/**
+		 * Crée une entrée du cache.
+		 *
+		 * @param ecoles : les noms des villes qui possèdent une école.
+		 * @param solveur : le nom de l'algorithme qui a calculé la solution.
+		 * @param dureeMs : la durée du calcul, en millisecondes.
+		 */
+		public Entree(List<String> ecoles, String solveur, long dureeMs) {
+			this.ecoles = ecoles;
+			this.solveur = solveur;
+			this.dureeMs = dureeMs;
+		}
+
+		/**
+		 * @return les noms des villes qui possèdent une école.
+		 */
+		public List<String> getEcoles() {
+			return ecoles;
+		}
+
+		/**
+		 * @return le nom de l'algorithme qui a calculé la solution.
+		 */
+		public String getSolveur() {
+			return solveur;
+		}
+
+		/**
+		 * @return la durée du calcul de la solution, en millisecondes.
+		 */
+		public long getDureeMs() {
+			return dureeMs;
+		}
+	}
+
+	/**
+	 * Les solutions en mémoire, associées à l'empreinte du graphe, de la moins
+	 * récemment utilisée à la plus récemment utilisée.
+	 */
+	private final LinkedHashMap<String, Entree> entrees = new LinkedHashMap<String, Entree>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entree> plusAncienne) {
+			return size() > CAPACITE;
+		}
+	};
+
+	/**
+	 * Le répertoire dans lequel les solutions sont aussi écrites, ou null pour
+	 * garder les solutions en mémoire uniquement.
+	 */
+	private File repertoire;
+
+	/**
+	 * Constructeur privé pour que cette classe soit un singleton.
+	 */
+	private CacheSolutions() {
+	}
+
+	/**
+	 * Attribut d'une classe singleton : charge l'unique instance de la
+	 * classe en mémoire si ce n'est pas déja fait, et la retourne.
+	 *
+	 * @return : l'unique instance de CacheSolutions.
+	 */
+	public static synchronized CacheSolutions getInstance() {
+		if (INSTANCE == null)
+			INSTANCE = new CacheSolutions();
+
+		return INSTANCE;
+	}
+
+	/**
+	 * Donne le répertoire dans lequel écrire et relire les solutions. Il est créé si nécessaire.
+	 *
+	 * @param repertoire : le répertoire, ou null pour garder les solutions en mémoire uniquement.
+	 */
+	public synchronized void setRepertoire(File repertoire) {
+		if (repertoire != null && !repertoire.isDirectory() && !repertoire.mkdirs())
+			System.out.println("Erreur : impossible de créer le répertoire du cache " + repertoire);
+		this.repertoire = repertoire;
+	}
+
+	/**
+	 * Cherche la solution d'un graphe, en mémoire puis dans le répertoire du cache.
+	 *
+	 * @param empreinte : l'empreinte du graphe.
+	 * @return la solution, ou null si elle n'est pas dans le cache.
+	 */
+	public synchronized Entree chercher(String empreinte) {
+		Entree entree = entrees.get(empreinte);
+		if (entree == null && repertoire != null) {
+			entree = lire(new File(repertoire, empreinte + ".solution"), empreinte);
+			if (entree != null)
+				entrees.put(empreinte, entree);
+		}
+		Metriques.getInstance().ajouterConsultationCache(entree != null);
+		return entree;
+	}
+
+	/**
+	 * Ajoute la solution d'un graphe au cache, et l'écrit dans le répertoire du cache s'il y en a un.
+	 *
+	 * @param empreinte : l'empreinte du graphe.
+	 * @param entree : la solution.
+	 */
+	public synchronized void ajouter(String empreinte, Entree entree) {
+		entrees.put(empreinte, entree);
+		if (repertoire != null)
+			ecrire(new File(repertoire, empreinte + ".solution"), empreinte, entree);
+	}
+
+	/**
+	 * Retire la solution d'un graphe du cache en mémoire et supprime son fichier dans le
+	 * répertoire du cache s'il y en a un.
+	 *
+	 * @param empreinte : l'empreinte du graphe.
+	 */
+	public synchronized void retirer(String empreinte) {
+		entrees.remove(empreinte);
+		if (repertoire != null) {
+			File fichier = new File(repertoire, empreinte + ".solution");
+			if (fichier.isFile() && !fichier.delete())
+				System.out.println("Erreur : impossible de supprimer le fichier du cache " + fichier);
+		}
+	}
+
+	/**
+	 * Vide le cache en mémoire. Les fichiers du répertoire du cache sont conservés.
+	 */
+	public synchronized void vider() {
+		entrees.clear();
+	}
+
+	/**
+	 * Écrit une solution dans un fichier : une ligne "empreinte(...)", une ligne "solveur(...)",
+	 * une ligne "duree(...)" puis une ligne "ecole(...)" par école, comme dans un fichier
+	 * d'agglomération. Si une erreur est rencontrée lors de l'écriture, celle-ci sera affichée.
+	 */
+	private static void ecrire(File fichier, String empreinte, Entree entree) {
+		try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(fichier)))) {
+			pw.println("empreinte(" + empreinte + ")");
+			pw.println("solveur(" + entree.getSolveur() + ")");
+			pw.println("duree(" + entree.getDureeMs() + ")");
+			for (String ecole : entree.getEcoles()) {
+				pw.print("ecole(");
+				pw.print(ecole);
+				pw.println(")");
+			}
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'écriture du cache : " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Lit une solution écrite par {@link #ecrire(File, String, Entree)}.
+	 *
+	 * @param empreinte : l'empreinte du graphe dont on cherche la solution.
+	 * @return la solution, ou null si le fichier n'existe pas, est invalide ou a été écrit pour
+	 * une autre empreinte.
+	 */
+	private static Entree lire(File fichier, String empreinte) {
+		if (!fichier.isFile())
+			return null;
+
+		String empreinteLue = null;
+		String solveur = null;
+		long dureeMs = 0;
+		ArrayList<String> ecoles = new ArrayList<String>(0);
+		try (BufferedReader contenu = new BufferedReader(new FileReader(fichier))) {
+			String ligne;
+			while ((ligne = contenu.readLine()) != null) {
+				if (!ligne.endsWith(")"))
+					return null;
+				if (ligne.startsWith("ecole("))
+					ecoles.add(ligne.substring("ecole(".length(), ligne.length() - 1));
+				else if (ligne.startsWith("empreinte("))
+					empreinteLue = ligne.substring("empreinte(".length(), ligne.length() - 1);
+				else if (ligne.startsWith("solveur("))
+					solveur = ligne.substring("solveur(".length(), ligne.length() - 1);
+				else if (ligne.startsWith("duree("))
+					dureeMs = Long.parseLong(ligne.substring("duree(".length(), ligne.length() - 1));
+				else
+					return null;
+			}
+		} catch (IOException | NumberFormatException e) {
+			System.out.println("Erreur lors de la lecture du cache : " + e.getLocalizedMessage());
+			return null;
+		}
+		if (solveur == null || !empreinte.equals(empreinteLue))
+			return null;
+		return new Entree(ecoles, solveur, dureeMs);
+	}
+}
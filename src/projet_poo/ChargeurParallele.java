@@ -0,0 +1,526 @@
+package projet_poo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lecture d'un fichier d'agglomération sur plusieurs threads, utilisée par
+ * {@link Agglomeration#init(String)} pour les gros fichiers. Le fichier est découpé en morceaux
+ * dont les limites tombent juste après une fin de ligne, et chaque morceau est projeté en
+ * mémoire et lu par un thread.
+ *
+ * La lecture se fait en deux passes parallèles :
+ * 1) chaque morceau classe ses lignes (ville, route, école ou erreur de syntaxe) et relève les
+ * noms des villes, ce qui permet ensuite de créer toutes les villes dans l'ordre du fichier ;
+ * 2) une fois toutes les villes connues, chaque morceau analyse ses routes et ses écoles et range
+ * les indices des villes concernées dans des tableaux d'int qui lui sont propres.
+ * Les routes et les écoles sont enfin ajoutées à l'agglomération dans l'ordre du fichier, ce qui
+ * détecte les routes et écoles en double.
+ *
+ * Chaque erreur possible est repérée par la position (en octets) de sa ligne, et seule celle de
+ * plus petite position est signalée : c'est celle que la lecture ligne par ligne aurait signalée,
+ * avec le même message, quel que soit le découpage en morceaux.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class ChargeurParallele {
+
+	/**
+	 * Taille en octets à partir de laquelle un fichier est lu avec cette classe.
+	 */
+	static final long TAILLE_MIN = 32L << 20;
+
+	/**
+	 * Taille visée en octets pour un morceau du fichier.
+	 */
+	private static final long TAILLE_MORCEAU = 16L << 20;
+
+	/**
+	 * Position utilisée quand il n'y a pas de ligne du type recherché.
+	 */
+	private static final long AUCUNE = Long.MAX_VALUE;
+
+	/**
+	 * Une erreur trouvée dans le fichier et la position de la ligne qui la provoque.
+	 * L'exception est une {@link SyntaxeFichierInvalideException}, ou une RuntimeException
+	 * pour les lignes sur lesquelles la lecture ligne par ligne échoue aussi de cette façon.
+	 */
+	private static final class Erreur {
+		private final long position;
+		private final Exception exception;
+
+		Erreur(long position, Exception exception) {
+			this.position = position;
+			this.exception = exception;
+		}
+
+		Erreur(long position, String message) {
+			this(position, new SyntaxeFichierInvalideException(message));
+		}
+
+		/**
+		 * @return celle des deux erreurs qui a la plus petite position (a peut être null).
+		 */
+		static Erreur premiere(Erreur a, Erreur b) {
+			return a == null || (b != null && b.position < a.position) ? b : a;
+		}
+	}
+
+	/**
+	 * Reçoit une par une les lignes d'un morceau, dans l'ordre.
+	 */
+	private interface Lecteur {
+		/**
+		 * @param position : la position du début de la ligne dans le fichier.
+		 * @param ligne : la ligne, sans le caractère de fin de ligne.
+		 * @return true pour continuer la lecture du morceau, false pour l'arrêter.
+		 */
+		boolean lire(long position, String ligne);
+	}
+
+	/**
+	 * Résultat de la première passe sur un morceau.
+	 */
+	private static final class Analyse {
+		private long lignes = 0;
+		private long premiereRoute = AUCUNE, premiereEcole = AUCUNE;
+		/** Première ligne invalide (ni ville, ni route, ni école) du morceau. */
+		private Erreur erreur;
+		/** Première ville du morceau dont le nom n'a pas pu être lu. */
+		private Erreur villeIllisible;
+		private final ArrayList<String> nomsVilles = new ArrayList<String>();
+		private long[] positionsVilles = new long[16];
+	}
+
+	/**
+	 * Résultat de la deuxième passe sur un morceau : indices des villes des routes (deux
+	 * par route) et des écoles, avec la position de leur ligne.
+	 */
+	private static final class Liens {
+		private int[] routes = new int[64];
+		private long[] positionsRoutes = new long[32];
+		private int nombreRoutes = 0;
+		private int[] ecoles = new int[16];
+		private long[] positionsEcoles = new long[16];
+		private int nombreEcoles = 0;
+		/** Sommes des hachages des routes pour l'empreinte du graphe. */
+		private long empreinteA = 0, empreinteB = 0;
+		private Erreur erreur;
+	}
+
+	/**
+	 * Le fichier à lire.
+	 */
+	private final File fichier;
+
+	/**
+	 * L'agglomération vide à remplir.
+	 */
+	private final Agglomeration agglomeration;
+
+	/**
+	 * Le jeu de caractères du fichier, le même que celui utilisé par FileReader.
+	 */
+	private final Charset jeuDeCaracteres = Charset.defaultCharset();
+
+	/**
+	 * Le nombre minimal de morceaux du découpage.
+	 */
+	private final int morceauxMin;
+
+	/**
+	 * Les positions des débuts des morceaux, suivies de la taille du fichier.
+	 */
+	private long[] limites;
+
+	/**
+	 * Prépare la lecture d'un fichier, découpé en au moins un morceau par processeur.
+	 *
+	 * @param fichier : le fichier décrivant une agglomération.
+	 * @param agglomeration : l'agglomération vide à remplir.
+	 */
+	ChargeurParallele(File fichier, Agglomeration agglomeration) {
+		this(fichier, agglomeration, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Prépare la lecture d'un fichier, découpé en au moins le nombre de morceaux donné (moins
+	 * si le fichier n'a pas assez de lignes). Permet de lire un petit fichier en plusieurs
+	 * morceaux, pour comparer le résultat à celui de la lecture ligne par ligne.
+	 *
+	 * @param fichier : le fichier décrivant une agglomération.
+	 * @param agglomeration : l'agglomération vide à remplir.
+	 * @param morceauxMin : le nombre minimal de morceaux, au moins 1.
+	 */
+	ChargeurParallele(File fichier, Agglomeration agglomeration, int morceauxMin) {
+		this.fichier = fichier;
+		this.agglomeration = agglomeration;
+		this.morceauxMin = morceauxMin;
+	}
+
+	/**
+	 * Lit le fichier et remplit l'agglomération avec ses villes, routes et écoles. La durée
+	 * des deux passes est comptée comme durée de lecture dans les {@link Metriques}, et celle de
+	 * l'ajout des routes comme durée de construction du graphe.
+	 *
+	 * @throws IOException : lancée pour toute erreur d'accès ou de lecture sur le fichier.
+	 * @throws SyntaxeFichierInvalideException : lancée pour la première erreur de syntaxe du fichier.
+	 */
+	void charger() throws IOException, SyntaxeFichierInvalideException {
+		long debutLecture = System.nanoTime();
+		try (FileChannel canal = FileChannel.open(fichier.toPath(), StandardOpenOption.READ)) {
+			limites = decouper(canal);
+			int nombreDeMorceaux = limites.length - 1;
+			ExecutorService executeur = Executors.newFixedThreadPool(
+					Math.min(nombreDeMorceaux, Runtime.getRuntime().availableProcessors()));
+			try {
+				charger(canal, executeur, debutLecture);
+			} finally {
+				executeur.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Effectue les deux passes et l'ajout des routes et écoles décrits dans la documentation
+	 * de la classe.
+	 */
+	private void charger(FileChannel canal, ExecutorService executeur, long debutLecture)
+			throws IOException, SyntaxeFichierInvalideException {
+		int nombreDeMorceaux = limites.length - 1;
+
+		// Première passe : classement des lignes et noms des villes
+		ArrayList<Callable<Analyse>> analyses = new ArrayList<Callable<Analyse>>();
+		for (int i = 0; i < nombreDeMorceaux; i++) {
+			int morceau = i;
+			analyses.add(() -> analyser(canal, morceau));
+		}
+		List<Analyse> resultats = executer(executeur, analyses);
+
+		long lignes = 0, premiereRoute = AUCUNE, premiereEcole = AUCUNE;
+		Erreur erreur = null;
+		for (Analyse analyse : resultats) {
+			lignes += analyse.lignes;
+			premiereRoute = Math.min(premiereRoute, analyse.premiereRoute);
+			premiereEcole = Math.min(premiereEcole, analyse.premiereEcole);
+			erreur = Erreur.premiere(erreur, analyse.erreur);
+		}
+
+		// Les villes valides sont celles avant la première route ou école ; une ville
+		// après est une erreur, sauf s'il y a une autre erreur avant elle
+		long finVilles = Math.min(premiereRoute, premiereEcole);
+		for (Analyse analyse : resultats) {
+			for (int i = 0; i < analyse.nomsVilles.size(); i++) {
+				long position = analyse.positionsVilles[i];
+				if (position > finVilles) {
+					erreur = Erreur.premiere(erreur, new Erreur(position, premiereRoute < position
+							? "Il ne doit pas y avoir de ville après une route"
+							: "Il ne doit pas y avoir de ville après une école"));
+					break;
+				}
+				if (analyse.nomsVilles.get(i) != null)
+					agglomeration.ajouterVille(analyse.nomsVilles.get(i));
+			}
+			if (analyse.villeIllisible != null && analyse.villeIllisible.position < finVilles)
+				erreur = Erreur.premiere(erreur, analyse.villeIllisible);
+		}
+
+		// Deuxième passe : routes et écoles, dans les morceaux qui vont au-delà des villes
+		long borne = erreur == null ? AUCUNE : erreur.position;
+		long ecolesApres = premiereEcole;
+		ArrayList<Callable<Liens>> taches = new ArrayList<Callable<Liens>>();
+		for (int i = 0; i < nombreDeMorceaux; i++) {
+			int morceau = i;
+			if (limites[i + 1] > finVilles && limites[i] < borne)
+				taches.add(() -> relier(canal, morceau, finVilles, ecolesApres, borne));
+		}
+		List<Liens> liens = executer(executeur, taches);
+		for (Liens lien : liens)
+			erreur = Erreur.premiere(erreur, lien.erreur);
+		Metriques.getInstance().ajouterLecture(lignes, System.nanoTime() - debutLecture);
+
+		long debutConstruction = System.nanoTime();
+
+		// Ajout des routes puis des écoles dans l'ordre du fichier
+		if (premiereRoute != AUCUNE && !agglomeration.possedeListesAdjacence())
+			agglomeration.creerListesAdjacence();
+		long empreinteA = 0, empreinteB = 0;
+		fusion: for (Liens lien : liens) {
+			for (int i = 0; i < lien.nombreRoutes; i++) {
+				long position = lien.positionsRoutes[i];
+				if (erreur != null && position > erreur.position)
+					break fusion;
+				if (!agglomeration.relierVilles(lien.routes[2 * i], lien.routes[2 * i + 1])) {
+					erreur = new Erreur(position, "Route invalide : " + lireLigne(canal, position));
+					break fusion;
+				}
+			}
+			empreinteA += lien.empreinteA;
+			empreinteB += lien.empreinteB;
+		}
+		agglomeration.ajouterAEmpreinte(empreinteA, empreinteB);
+		Metriques.getInstance().ajouterConstructionGraphe(System.nanoTime() - debutConstruction);
+
+		fusion: for (Liens lien : liens) {
+			for (int i = 0; i < lien.nombreEcoles; i++) {
+				long position = lien.positionsEcoles[i];
+				if (erreur != null && position > erreur.position)
+					break fusion;
+				if (agglomeration.possedeEcole(lien.ecoles[i])) {
+					erreur = new Erreur(position,
+							"École invalide : " + Agglomeration.argumentEcole(lireLigne(canal, position)));
+					break fusion;
+				}
+				agglomeration.setEcole(lien.ecoles[i], true);
+			}
+		}
+
+		if (erreur != null) {
+			if (erreur.exception instanceof SyntaxeFichierInvalideException)
+				throw (SyntaxeFichierInvalideException) erreur.exception;
+			throw (RuntimeException) erreur.exception;
+		}
+	}
+
+	/**
+	 * Première passe sur un morceau : classe ses lignes et relève les noms des villes.
+	 * S'arrête à la première ligne invalide.
+	 */
+	private Analyse analyser(FileChannel canal, int morceau) throws IOException {
+		Analyse analyse = new Analyse();
+		parcourir(canal, morceau, (position, ligne) -> {
+			analyse.lignes++;
+			if (Agglomeration.MOTIF_VILLE.matcher(ligne).matches()) {
+				String nom = null;
+				try {
+					nom = Agglomeration.nomVilleDeLigne(ligne);
+				} catch (RuntimeException e) {
+					if (analyse.villeIllisible == null)
+						analyse.villeIllisible = new Erreur(position, e);
+				}
+				int i = analyse.nomsVilles.size();
+				if (i == analyse.positionsVilles.length)
+					analyse.positionsVilles = Arrays.copyOf(analyse.positionsVilles, 2 * i);
+				analyse.positionsVilles[i] = position;
+				analyse.nomsVilles.add(nom);
+			} else if (Agglomeration.MOTIF_ROUTE.matcher(ligne).matches()) {
+				analyse.premiereRoute = Math.min(analyse.premiereRoute, position);
+			} else if (Agglomeration.MOTIF_ECOLE.matcher(ligne).matches()) {
+				analyse.premiereEcole = Math.min(analyse.premiereEcole, position);
+			} else {
+				analyse.erreur = new Erreur(position, "".equals(ligne) ? "Il ne doit pas y avoir de ligne vide"
+						: "Ligne inattendue : " + ligne);
+				return false;
+			}
+			return true;
+		});
+		return analyse;
+	}
+
+	/**
+	 * Deuxième passe sur un morceau : analyse les routes et les écoles situées après la fin
+	 * des villes et avant la borne, et range les indices de leurs villes. S'arrête à la première
+	 * erreur, ou à la première ligne qui n'est ni une route ni une école (qui est une erreur
+	 * déjà relevée par la première passe).
+	 *
+	 * @param finVilles : la position de la première route ou école du fichier.
+	 * @param premiereEcole : la position de la première école du fichier.
+	 * @param borne : la position de la première erreur déjà connue.
+	 */
+	private Liens relier(FileChannel canal, int morceau, long finVilles, long premiereEcole, long borne)
+			throws IOException {
+		Liens liens = new Liens();
+		parcourir(canal, morceau, (position, ligne) -> {
+			if (position < finVilles)
+				return true;
+			if (position >= borne)
+				return false;
+
+			try {
+				if (Agglomeration.MOTIF_ROUTE.matcher(ligne).matches()) {
+					if (position > premiereEcole) {
+						liens.erreur = new Erreur(position, "Il ne doit pas y avoir de route après une école");
+						return false;
+					}
+					String[] noms;
+					try {
+						noms = Agglomeration.nomsVillesDeRoute(ligne);
+					} catch (NoSuchElementException e) {
+						liens.erreur = new Erreur(position, "Il faut donner deux villes pour une route : " + ligne);
+						return false;
+					}
+					if (noms[0].equals(noms[1])) {
+						liens.erreur = new Erreur(position, "Une route ne doit pas être d'une ville"
+								+ " vers elle-même : " + ligne);
+						return false;
+					}
+					int indice1 = agglomeration.chercherIndiceVille(noms[0]);
+					int indice2 = agglomeration.chercherIndiceVille(noms[1]);
+					if (indice1 < 0 || indice2 < 0) {
+						liens.erreur = new Erreur(position, "Route invalide : " + ligne);
+						return false;
+					}
+
+					int i = liens.nombreRoutes++;
+					if (i == liens.positionsRoutes.length) {
+						liens.positionsRoutes = Arrays.copyOf(liens.positionsRoutes, 2 * i);
+						liens.routes = Arrays.copyOf(liens.routes, 4 * i);
+					}
+					liens.routes[2 * i] = indice1;
+					liens.routes[2 * i + 1] = indice2;
+					liens.positionsRoutes[i] = position;
+					liens.empreinteA += Agglomeration.hacherRoute(Agglomeration.GRAINE_A, noms[0], noms[1]);
+					liens.empreinteB += Agglomeration.hacherRoute(Agglomeration.GRAINE_B, noms[0], noms[1]);
+				} else if (Agglomeration.MOTIF_ECOLE.matcher(ligne).matches()) {
+					String argument = Agglomeration.argumentEcole(ligne);
+					int indice = agglomeration.chercherIndiceVille(Agglomeration.nomVilleDEcole(argument));
+					if (indice < 0) {
+						liens.erreur = new Erreur(position, "École invalide : " + argument);
+						return false;
+					}
+
+					int i = liens.nombreEcoles++;
+					if (i == liens.ecoles.length) {
+						liens.ecoles = Arrays.copyOf(liens.ecoles, 2 * i);
+						liens.positionsEcoles = Arrays.copyOf(liens.positionsEcoles, 2 * i);
+					}
+					liens.ecoles[i] = indice;
+					liens.positionsEcoles[i] = position;
+				} else {
+					return false;
+				}
+			} catch (RuntimeException e) {
+				liens.erreur = new Erreur(position, e);
+				return false;
+			}
+			return true;
+		});
+		return liens;
+	}
+
+	/**
+	 * Exécute des tâches sur le pool de threads et retourne leurs résultats dans l'ordre.
+	 */
+	private static <T> List<T> executer(ExecutorService executeur, List<Callable<T>> taches) throws IOException {
+		ArrayList<T> resultats = new ArrayList<T>(taches.size());
+		try {
+			for (Future<T> future : executeur.invokeAll(taches))
+				resultats.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Lecture du fichier interrompue", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+		return resultats;
+	}
+
+	/**
+	 * Découpe le fichier en morceaux d'environ {@link #TAILLE_MORCEAU} octets, au moins
+	 * {@link #morceauxMin}, dont chaque limite est placée juste après un caractère '\n'.
+	 *
+	 * @return les positions des débuts des morceaux, suivies de la taille du fichier.
+	 */
+	private long[] decouper(FileChannel canal) throws IOException {
+		long taille = canal.size();
+		int nombre = (int) Math.max(morceauxMin,
+				(taille + TAILLE_MORCEAU - 1) / TAILLE_MORCEAU);
+		long[] limites = new long[nombre + 1];
+		int nombreDeLimites = 1; // limites[0] = 0
+		ByteBuffer tampon = ByteBuffer.allocate(1 << 16);
+		for (int k = 1; k < nombre; k++) {
+			long position = Math.max(taille * k / nombre, limites[nombreDeLimites - 1]);
+			long limite = -1;
+			while (limite < 0 && position < taille) {
+				tampon.clear();
+				int lus = canal.read(tampon, position);
+				if (lus <= 0)
+					break;
+				for (int i = 0; i < lus && limite < 0; i++)
+					if (tampon.get(i) == '\n')
+						limite = position + i + 1;
+				position += lus;
+			}
+			if (limite < 0 || limite >= taille)
+				break;
+			if (limite > limites[nombreDeLimites - 1])
+				limites[nombreDeLimites++] = limite;
+		}
+		limites[nombreDeLimites++] = taille;
+		return Arrays.copyOf(limites, nombreDeLimites);
+	}
+
+	/**
+	 * Projette un morceau en mémoire et donne ses lignes une par une au lecteur. Comme
+	 * BufferedReader.readLine(), une ligne se termine par "\n", "\r" ou "\r\n", et la fin
+	 * du fichier termine la dernière ligne si elle n'est pas vide.
+	 */
+	private void parcourir(FileChannel canal, int morceau, Lecteur lecteur) throws IOException {
+		long origine = limites[morceau];
+		int taille = (int) (limites[morceau + 1] - origine);
+		if (taille == 0)
+			return;
+		MappedByteBuffer tampon = canal.map(FileChannel.MapMode.READ_ONLY, origine, taille);
+		byte[] octets = new byte[256];
+
+		int debut = 0;
+		int i = 0;
+		while (i <= taille) {
+			byte c = i < taille ? tampon.get(i) : 0;
+			boolean finDeLigne = i < taille && (c == '\n' || c == '\r');
+			if (finDeLigne || (i == taille && debut < taille)) {
+				int longueur = i - debut;
+				if (longueur > octets.length)
+					octets = new byte[Math.max(longueur, 2 * octets.length)];
+				tampon.get(debut, octets, 0, longueur);
+				if (!lecteur.lire(origine + debut, new String(octets, 0, longueur, jeuDeCaracteres)))
+					return;
+				if (c == '\r' && i + 1 < taille && tampon.get(i + 1) == '\n')
+					i++;
+				debut = i + 1;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Relit dans le fichier la ligne qui commence à la position donnée, pour un message d'erreur.
+	 */
+	private String lireLigne(FileChannel canal, long position) throws IOException {
+		ByteBuffer tampon = ByteBuffer.allocate(1 << 12);
+		ByteArrayOutputStream ligne = new ByteArrayOutputStream();
+		while (true) {
+			tampon.clear();
+			int lus = canal.read(tampon, position);
+			if (lus <= 0)
+				break;
+			for (int i = 0; i < lus; i++) {
+				byte c = tampon.get(i);
+				if (c == '\n' || c == '\r')
+					return new String(ligne.toByteArray(), jeuDeCaracteres);
+				ligne.write(c);
+			}
+			position += lus;
+		}
+		return new String(ligne.toByteArray(), jeuDeCaracteres);
+	}
+}
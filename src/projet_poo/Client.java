@@ -0,0 +1,74 @@
+package projet_poo;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client minimal du mode serveur ({@link Serveur}) : se connecte au serveur local sur un port
+ * donné, envoie des commandes du protocole et lit leur réponse. Le programme l'utilise avec
+ * les arguments "--client port" pour envoyer au serveur les lignes saisies au clavier.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public class Client implements Closeable {
+
+	/**
+	 * La connexion au serveur.
+	 */
+	private final Socket socket;
+
+	/**
+	 * Les réponses du serveur, une par ligne.
+	 */
+	private final BufferedReader entree;
+
+	/**
+	 * Les commandes envoyées au serveur, une par ligne.
+	 */
+	private final PrintWriter sortie;
+
+	/**
+	 * Se connecte au serveur qui écoute sur l'adresse de bouclage et le port donnés.
+	 *
+	 * @param port : le port du serveur.
+	 *
+	 * @throws IOException : lancée si la connexion est impossible.
+	 */
+	public Client(int port) throws IOException {
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		entree = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		sortie = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+	}
+
+	/**
+	 * Envoie une commande au serveur et attend sa réponse.
+	 *
+	 * @param commande : la commande, sur une ligne (par exemple "valider a").
+	 * @return la ligne de réponse, commençant par "OK" ou "ERREUR".
+	 *
+	 * @throws IOException : lancée pour toute erreur de communication, ou si le serveur a
+	 * fermé la connexion sans répondre.
+	 */
+	public String envoyer(String commande) throws IOException {
+		sortie.println(commande);
+		String reponse = entree.readLine();
+		if (reponse == null)
+			throw new IOException("Connexion fermée par le serveur");
+		return reponse;
+	}
+
+	/**
+	 * Ferme la connexion, sans envoyer la commande quitter.
+	 */
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
@@ -0,0 +1,180 @@
+package projet_poo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+/**
+ * Application d'un fichier de modifications (fichier delta) à une {@link Agglomeration} déjà
+ * chargée, sans relire tout le fichier de l'agglomération. Chaque ligne d'un fichier delta est
+ * une ligne du format habituel précédée de "+" (ajout) ou "-" (retrait) :
+ * - +ville(nom) : ajoute une nouvelle ville, sans route ni école ;
+ * - +route(nom1,nom2) et -route(nom1,nom2) : ajoute ou retire une route ;
+ * - +ecole(nom) et -ecole(nom) : ajoute ou retire une école.
+ * Les lignes sont appliquées dans l'ordre. Un tel fichier est écrit par
+ * {@link Agglomeration#sauvegardeModifications(String)}.
+ *
+ * L'application est atomique : chaque modification appliquée est notée avec la façon de
+ * l'annuler, et à la première erreur toutes les modifications déjà faites sont annulées dans
+ * l'ordre inverse avant de lever l'exception. La durée est proportionnelle au nombre de lignes
+ * du fichier delta et au degré des villes concernées, pas à la taille de l'agglomération.
+ *
+ * Seules les villes dont la couverture a pu diminuer sont ensuite vérifiées : les extrémités
+ * des routes retirées, les villes ajoutées, et les villes dont l'école a été retirée avec leurs
+ * voisines. Ajouter une route ou une école ne peut rendre aucune ville non couverte.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class FichierDelta {
+
+	/**
+	 * L'agglomération à modifier.
+	 */
+	private final Agglomeration agglomeration;
+
+	/**
+	 * Les actions qui annulent les modifications déjà appliquées, la plus récente en premier.
+	 */
+	private final ArrayDeque<Runnable> annulations = new ArrayDeque<Runnable>();
+
+	/**
+	 * Les indices des villes dont il faudra vérifier la couverture.
+	 */
+	private int[] aVerifier = new int[16];
+	private int nombreAVerifier = 0;
+
+	/**
+	 * Les indices des villes dont l'école a été retirée : il faudra vérifier la couverture
+	 * de leurs voisines.
+	 */
+	private int[] ecolesRetirees = new int[16];
+	private int nombreEcolesRetirees = 0;
+
+	/**
+	 * Prépare l'application de fichiers delta à une agglomération.
+	 *
+	 * @param agglomeration : l'agglomération chargée à modifier.
+	 */
+	FichierDelta(Agglomeration agglomeration) {
+		this.agglomeration = agglomeration;
+	}
+
+	/**
+	 * Applique toutes les lignes du fichier, ou aucune en cas d'erreur.
+	 *
+	 * @param fichier : le fichier delta.
+	 *
+	 * @return l'ensemble des indices des villes qui ne respectent plus la contrainte
+	 * d'accessibilité après les modifications (vide si la configuration est toujours valide).
+	 *
+	 * @throws IOException : lancée pour toute erreur d'accès ou de lecture sur le fichier.
+	 * @throws SyntaxeFichierInvalideException : lancée pour la première ligne invalide du fichier,
+	 * ou qui ne peut pas être appliquée (ville déjà présente, route ou école absente ou déjà présente).
+	 */
+	BitSet appliquer(File fichier) throws IOException, SyntaxeFichierInvalideException {
+		try (BufferedReader contenu = new BufferedReader(new FileReader(fichier))) {
+			String ligne;
+			while ((ligne = contenu.readLine()) != null)
+				appliquerLigne(ligne);
+		} catch (IOException | SyntaxeFichierInvalideException | RuntimeException e) {
+			while (!annulations.isEmpty())
+				annulations.pop().run();
+			throw e;
+		}
+
+		long debutValidation = System.nanoTime();
+		BitSet nonCouvertes = new BitSet();
+		for (int i = 0; i < nombreAVerifier; i++)
+			verifier(aVerifier[i], nonCouvertes);
+		for (int i = 0; i < nombreEcolesRetirees; i++) {
+			int ville = ecolesRetirees[i];
+			verifier(ville, nonCouvertes);
+			int degre = agglomeration.getDegre(ville);
+			for (int k = 0; k < degre; k++)
+				verifier(agglomeration.getVoisin(ville, k), nonCouvertes);
+		}
+		Metriques.getInstance().ajouterValidation(System.nanoTime() - debutValidation);
+		return nonCouvertes;
+	}
+
+	/**
+	 * Applique une ligne d'un fichier delta et note comment l'annuler.
+	 */
+	private void appliquerLigne(String ligne) throws SyntaxeFichierInvalideException {
+		if ("".equals(ligne))
+			throw new SyntaxeFichierInvalideException("Il ne doit pas y avoir de ligne vide");
+
+		boolean ajout = ligne.charAt(0) == '+';
+		String reste = ligne.substring(1);
+		if (!ajout && ligne.charAt(0) != '-')
+			throw new SyntaxeFichierInvalideException("Ligne inattendue : " + ligne);
+
+		if (ajout && Agglomeration.MOTIF_VILLE.matcher(reste).matches()) {
+			String nomVille = Agglomeration.nomVilleDeLigne(reste);
+			if (agglomeration.chercherIndiceVille(nomVille) >= 0)
+				throw new SyntaxeFichierInvalideException("Ville déjà présente : " + ligne);
+			int indice = agglomeration.ajouterNouvelleVille(nomVille);
+			annulations.push(agglomeration::retirerDerniereVille);
+			aVerifier = ajouter(aVerifier, nombreAVerifier++, indice);
+		}
+		else if (Agglomeration.MOTIF_ROUTE.matcher(reste).matches()) {
+			String[] noms;
+			try {
+				noms = Agglomeration.nomsVillesDeRoute(reste);
+			} catch (NoSuchElementException e) {
+				throw new SyntaxeFichierInvalideException("Il faut donner deux villes pour une route : " + ligne);
+			}
+			if (noms[0].equals(noms[1]))
+				throw new SyntaxeFichierInvalideException("Une route ne doit pas être d'une ville"
+						+ " vers elle-même : " + ligne);
+
+			int indice1 = agglomeration.chercherIndiceVille(noms[0]);
+			int indice2 = agglomeration.chercherIndiceVille(noms[1]);
+			if (indice1 < 0 || indice2 < 0 || !agglomeration.modifierRoute(indice1, indice2, ajout))
+				throw new SyntaxeFichierInvalideException("Route invalide : " + ligne);
+			annulations.push(() -> agglomeration.modifierRoute(indice1, indice2, !ajout));
+			if (!ajout) {
+				aVerifier = ajouter(aVerifier, nombreAVerifier++, indice1);
+				aVerifier = ajouter(aVerifier, nombreAVerifier++, indice2);
+			}
+		}
+		else if (Agglomeration.MOTIF_ECOLE.matcher(reste).matches()) {
+			String argument = Agglomeration.argumentEcole(reste);
+			int indice = agglomeration.chercherIndiceVille(Agglomeration.nomVilleDEcole(argument));
+			if (indice < 0 || agglomeration.possedeEcole(indice) == ajout)
+				throw new SyntaxeFichierInvalideException("École invalide : " + ligne);
+			agglomeration.setEcole(indice, ajout);
+			annulations.push(() -> agglomeration.setEcole(indice, !ajout));
+			if (!ajout)
+				ecolesRetirees = ajouter(ecolesRetirees, nombreEcolesRetirees++, indice);
+		}
+		else {
+			throw new SyntaxeFichierInvalideException("Ligne inattendue : " + ligne);
+		}
+	}
+
+	/**
+	 * Ajoute la ville à l'ensemble si elle ne respecte pas la contrainte d'accessibilité.
+	 */
+	private void verifier(int ville, BitSet nonCouvertes) {
+		if (!Validation.estCouverte(agglomeration, ville))
+			nonCouvertes.set(ville);
+	}
+
+	/**
+	 * Écrit une valeur à l'indice donné d'un tableau, en l'agrandissant s'il est plein.
+	 *
+	 * @return le tableau, éventuellement agrandi.
+	 */
+	private static int[] ajouter(int[] tableau, int indice, int valeur) {
+		if (indice == tableau.length)
+			tableau = Arrays.copyOf(tableau, 2 * tableau.length);
+		tableau[indice] = valeur;
+		return tableau;
+	}
+}
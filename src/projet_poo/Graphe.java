@@ -0,0 +1,54 @@
+package projet_poo;
+
+/**
+ * Vue d'un graphe simple non-orienté dont les sommets sont des villes, numérotées de 0 à
+ * {@link #getNombreDeVilles()} - 1, et qui peuvent posséder une école. Les voisins d'une ville
+ * sont accessibles par leur rang, comme dans une représentation CSR (tableau des débuts
+ * de listes et tableau des voisins).
+ *
+ * Les algorithmes ({@link SolveurGlouton}, {@link Validation}) travaillent sur cette
+ * interface et peuvent donc lire aussi bien une {@link Agglomeration} en mémoire qu'un
+ * {@link GrapheMappe} stocké hors du tas Java.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public interface Graphe {
+
+	/**
+	 * @return le nombre de villes du graphe.
+	 */
+	int getNombreDeVilles();
+
+	/**
+	 * @param ville : l'indice de la ville.
+	 * @return le nombre de voisins de la ville.
+	 */
+	int getDegre(int ville);
+
+	/**
+	 * @param ville : l'indice de la ville.
+	 * @param rang : le rang du voisin, entre 0 et getDegre(ville) - 1.
+	 * @return l'indice du voisin de rang donné de la ville.
+	 */
+	int getVoisin(int ville, int rang);
+
+	/**
+	 * @param ville : l'indice de la ville.
+	 * @return le nom de la ville.
+	 */
+	String getNomVille(int ville);
+
+	/**
+	 * @param ville : l'indice de la ville.
+	 * @return true si la ville possède une école, false sinon.
+	 */
+	boolean possedeEcole(int ville);
+
+	/**
+	 * Permet de mettre ou retirer une école dans une ville, sans vérification.
+	 *
+	 * @param ville : l'indice de la ville.
+	 * @param ecole : true pour mettre une école, false pour l'enlever.
+	 */
+	void setEcole(int ville, boolean ecole);
+}
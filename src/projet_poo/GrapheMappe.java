@@ -0,0 +1,324 @@
+package projet_poo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Un {@link Graphe} stocké dans un fichier binaire projeté en mémoire (memory-mapped) : les
+ * tableaux ne sont pas dans le tas Java, le système les charge à la demande depuis le fichier.
+ * Ouvrir un graphe déjà construit est donc immédiat, et un tas de petite taille suffit même
+ * pour des dizaines de millions de villes. Les écoles sont écrites directement dans le fichier.
+ *
+ * Format du fichier (entiers en big-endian) :
+ * - en-tête de {@link #TAILLE_EN_TETE} octets : nombre magique, version, nombre de villes,
+ * nombre d'entrées du tableau des voisins (deux par route) ;
+ * - débuts : long[nombreDeVilles + 1], les voisins de la ville i sont aux indices
+ * débuts[i] à débuts[i + 1] - 1 du tableau des voisins (représentation CSR) ;
+ * - voisins : int[nombreDeVoisins] ;
+ * - écoles : long[(nombreDeVilles + 63) / 64], un bit par ville ;
+ * - débuts des noms : long[nombreDeVilles + 1], positions des noms dans la zone suivante ;
+ * - noms : les noms des villes à la suite, en UTF-8.
+ *
+ * À l'ouverture, la taille du fichier est comparée à celle annoncée par l'en-tête. Seule la
+ * zone des écoles est projetée en lecture-écriture, et elle ne l'est qu'après cette
+ * vérification : ouvrir un fichier ne peut donc jamais le modifier ni l'agrandir.
+ *
+ * Un MappedByteBuffer est limité à 2 Go : chaque zone est projetée en plusieurs morceaux.
+ * Cette classe n'est pas prévue pour être modifiée par plusieurs threads en même temps.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class GrapheMappe implements Graphe, AutoCloseable {
+
+	/**
+	 * Nombre magique au début des fichiers de graphe ("ECOLESGR" en ASCII).
+	 */
+	private static final long MAGIQUE = 0x45434f4c45534752L;
+
+	/**
+	 * Version du format du fichier.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Taille de l'en-tête du fichier en octets.
+	 */
+	private static final int TAILLE_EN_TETE = 64;
+
+	/**
+	 * Taille maximale en octets d'un morceau projeté en mémoire (1 Go, multiple de 8 pour
+	 * qu'un long ou un int ne soit jamais à cheval sur deux morceaux).
+	 */
+	private static final long TAILLE_MORCEAU = 1L << 30;
+
+	/**
+	 * Une zone contiguë du fichier, projetée en mémoire en un ou plusieurs morceaux.
+	 */
+	private static final class Zone {
+
+		/**
+		 * Les morceaux de la zone, de TAILLE_MORCEAU octets sauf le dernier.
+		 */
+		private final MappedByteBuffer[] morceaux;
+
+		/**
+		 * Projette en mémoire une zone du fichier, qui doit être entièrement dans le fichier.
+		 *
+		 * @param canal : le canal du fichier.
+		 * @param mode : READ_ONLY, ou READ_WRITE si la zone est modifiée.
+		 * @param position : la position du début de la zone dans le fichier.
+		 * @param taille : la taille de la zone en octets.
+		 */
+		Zone(FileChannel canal, FileChannel.MapMode mode, long position, long taille) throws IOException {
+			int nombre = (int) ((taille + TAILLE_MORCEAU - 1) / TAILLE_MORCEAU);
+			morceaux = new MappedByteBuffer[nombre];
+			for (int i = 0; i < nombre; i++) {
+				long debut = i * TAILLE_MORCEAU;
+				morceaux[i] = canal.map(mode, position + debut, Math.min(TAILLE_MORCEAU, taille - debut));
+			}
+		}
+
+		/**
+		 * @param octet : la position de l'octet dans la zone.
+		 * @return l'octet à cette position.
+		 */
+		byte getByte(long octet) {
+			return morceaux[(int) (octet / TAILLE_MORCEAU)].get((int) (octet % TAILLE_MORCEAU));
+		}
+
+		/**
+		 * @param indice : l'indice de l'int, la zone étant vue comme un tableau d'int.
+		 * @return l'int à cet indice.
+		 */
+		int getInt(long indice) {
+			long octet = indice * 4;
+			return morceaux[(int) (octet / TAILLE_MORCEAU)].getInt((int) (octet % TAILLE_MORCEAU));
+		}
+
+		/**
+		 * @param indice : l'indice du long, la zone étant vue comme un tableau de long.
+		 * @return le long à cet indice.
+		 */
+		long getLong(long indice) {
+			long octet = indice * 8;
+			return morceaux[(int) (octet / TAILLE_MORCEAU)].getLong((int) (octet % TAILLE_MORCEAU));
+		}
+
+		/**
+		 * @param indice : l'indice du long, la zone étant vue comme un tableau de long.
+		 * @param valeur : la valeur à écrire à cet indice.
+		 */
+		void putLong(long indice, long valeur) {
+			long octet = indice * 8;
+			morceaux[(int) (octet / TAILLE_MORCEAU)].putLong((int) (octet % TAILLE_MORCEAU), valeur);
+		}
+
+		/**
+		 * Écrit sur le disque les modifications faites dans la zone.
+		 */
+		void forcer() {
+			for (MappedByteBuffer morceau : morceaux)
+				morceau.force();
+		}
+	}
+
+	/**
+	 * Le fichier ouvert, gardé pour être fermé par {@link #close()}.
+	 */
+	private final RandomAccessFile fichier;
+
+	/**
+	 * Le nombre de villes du graphe.
+	 */
+	private final int nombreDeVilles;
+
+	/**
+	 * Les zones du fichier décrites dans la documentation de la classe.
+	 */
+	private final Zone debuts, voisins, ecoles, debutsNoms, noms;
+
+	/**
+	 * Ouvre un fichier de graphe écrit par {@link #ecrire(Graphe, String)} en le projetant
+	 * en mémoire. Seuls l'en-tête et la taille de la zone des noms sont lus.
+	 *
+	 * @param chemin : le chemin du fichier.
+	 *
+	 * @throws IOException : lancée si le fichier ne peut pas être ouvert, n'est pas un fichier
+	 * de graphe, ou n'a pas la taille annoncée par son en-tête (fichier tronqué par exemple).
+	 */
+	public GrapheMappe(String chemin) throws IOException {
+		fichier = new RandomAccessFile(chemin, "r");
+		try {
+			long longueur = fichier.length();
+			if (longueur < TAILLE_EN_TETE || fichier.readLong() != MAGIQUE || fichier.readInt() != VERSION)
+				throw new IOException("Ce n'est pas un fichier de graphe : " + chemin);
+			nombreDeVilles = fichier.readInt();
+			long nombreDeVoisins = fichier.readLong();
+
+			// Taille des zones avant les noms, calculée sans dépassement de capacité
+			if (nombreDeVilles < 0 || nombreDeVoisins < 0 || nombreDeVoisins > longueur / 4)
+				throw new IOException("Ce n'est pas un fichier de graphe (en-tête invalide) : " + chemin);
+			long tailleDebuts = 8L * (nombreDeVilles + 1);
+			long tailleVoisins = 4 * nombreDeVoisins;
+			long tailleEcoles = 8L * nombreDeMots(nombreDeVilles);
+			long positionNoms = TAILLE_EN_TETE + 2 * tailleDebuts + tailleVoisins + tailleEcoles;
+			if (positionNoms > longueur)
+				throw new IOException("Ce n'est pas un fichier de graphe (taille incorrecte) : " + chemin);
+
+			FileChannel canal = fichier.getChannel();
+			FileChannel.MapMode lecture = FileChannel.MapMode.READ_ONLY;
+			long position = TAILLE_EN_TETE;
+			debuts = new Zone(canal, lecture, position, tailleDebuts);
+			position += tailleDebuts;
+			voisins = new Zone(canal, lecture, position, tailleVoisins);
+			position += tailleVoisins;
+			long positionEcoles = position;
+			position += tailleEcoles;
+			debutsNoms = new Zone(canal, lecture, position, tailleDebuts);
+			position += tailleDebuts;
+
+			long tailleNoms = debutsNoms.getLong(nombreDeVilles);
+			if (debuts.getLong(0) != 0 || debuts.getLong(nombreDeVilles) != nombreDeVoisins
+					|| debutsNoms.getLong(0) != 0 || tailleNoms != longueur - position)
+				throw new IOException("Ce n'est pas un fichier de graphe (taille incorrecte) : " + chemin);
+			noms = new Zone(canal, lecture, position, tailleNoms);
+
+			// Seule zone modifiable ; la projection reste valide après la fermeture du canal
+			try (FileChannel canalEcoles = FileChannel.open(new File(chemin).toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				ecoles = new Zone(canalEcoles, FileChannel.MapMode.READ_WRITE, positionEcoles, tailleEcoles);
+			}
+		} catch (IOException e) {
+			fichier.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return le nombre de long nécessaires pour stocker un bit par ville.
+	 */
+	private static long nombreDeMots(int nombreDeVilles) {
+		return (nombreDeVilles + 63L) / 64;
+	}
+
+	@Override
+	public int getNombreDeVilles() {
+		return nombreDeVilles;
+	}
+
+	@Override
+	public int getDegre(int ville) {
+		return (int) (debuts.getLong(ville + 1L) - debuts.getLong(ville));
+	}
+
+	@Override
+	public int getVoisin(int ville, int rang) {
+		return voisins.getInt(debuts.getLong(ville) + rang);
+	}
+
+	@Override
+	public String getNomVille(int ville) {
+		long debut = debutsNoms.getLong(ville);
+		byte[] octets = new byte[(int) (debutsNoms.getLong(ville + 1L) - debut)];
+		for (int i = 0; i < octets.length; i++)
+			octets[i] = noms.getByte(debut + i);
+		return new String(octets, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean possedeEcole(int ville) {
+		return (ecoles.getLong(ville >>> 6) & (1L << ville)) != 0;
+	}
+
+	@Override
+	public void setEcole(int ville, boolean ecole) {
+		long mot = ecoles.getLong(ville >>> 6);
+		if (ecole)
+			mot |= 1L << ville;
+		else
+			mot &= ~(1L << ville);
+		ecoles.putLong(ville >>> 6, mot);
+	}
+
+	/**
+	 * Écrit sur le disque les écoles modifiées avec {@link #setEcole(int, boolean)}.
+	 */
+	public void forcer() {
+		ecoles.forcer();
+	}
+
+	/**
+	 * Écrit les écoles sur le disque et ferme le fichier.
+	 */
+	@Override
+	public void close() throws IOException {
+		forcer();
+		fichier.close();
+	}
+
+	/**
+	 * Écrit un graphe (par exemple une {@link Agglomeration} lue depuis un fichier texte)
+	 * dans un fichier au format de cette classe, qui pourra ensuite être ouvert avec
+	 * {@link #GrapheMappe(String)}. Crée le fichier si nécessaire, et le vide avant
+	 * d'écrire dedans s'il était déjà présent.
+	 *
+	 * @param graphe : le graphe à écrire.
+	 * @param chemin : le chemin du fichier.
+	 *
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public static void ecrire(Graphe graphe, String chemin) throws IOException {
+		int nombreDeVilles = graphe.getNombreDeVilles();
+		long nombreDeVoisins = 0;
+		for (int i = 0; i < nombreDeVilles; i++)
+			nombreDeVoisins += graphe.getDegre(i);
+
+		try (DataOutputStream sortie = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(chemin), 1 << 16))) {
+			sortie.writeLong(MAGIQUE);
+			sortie.writeInt(VERSION);
+			sortie.writeInt(nombreDeVilles);
+			sortie.writeLong(nombreDeVoisins);
+			sortie.write(new byte[TAILLE_EN_TETE - 24]);
+
+			long debut = 0;
+			for (int i = 0; i < nombreDeVilles; i++) {
+				sortie.writeLong(debut);
+				debut += graphe.getDegre(i);
+			}
+			sortie.writeLong(debut);
+
+			for (int i = 0; i < nombreDeVilles; i++) {
+				int degre = graphe.getDegre(i);
+				for (int k = 0; k < degre; k++)
+					sortie.writeInt(graphe.getVoisin(i, k));
+			}
+
+			for (long mot = 0; mot < nombreDeMots(nombreDeVilles); mot++) {
+				long bits = 0;
+				for (int bit = 0; bit < 64 && mot * 64 + bit < nombreDeVilles; bit++)
+					if (graphe.possedeEcole((int) (mot * 64 + bit)))
+						bits |= 1L << bit;
+				sortie.writeLong(bits);
+			}
+
+			debut = 0;
+			for (int i = 0; i < nombreDeVilles; i++) {
+				sortie.writeLong(debut);
+				debut += graphe.getNomVille(i).getBytes(StandardCharsets.UTF_8).length;
+			}
+			sortie.writeLong(debut);
+
+			for (int i = 0; i < nombreDeVilles; i++)
+				sortie.write(graphe.getNomVille(i).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -1,13 +1,20 @@
 package projet_poo;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
 
 /**
  * Le programme doit recevoir en argument le chemin vers un fichier texte décrivant une agglomération.
- * Le programme commence par un menu principal avec quatre choix : 1) résoudre manuellement,
- * 2) résoudre automatiquement, 3) sauvegarder et 4) quitter.
+ * Le programme commence par un menu principal avec six choix : 1) résoudre manuellement,
+ * 2) résoudre automatiquement, 3) sauvegarder, 4) quitter, 5) améliorer la solution et
+ * 6) sauvegarder les modifications.
  * 
  * 1) Résolution manuelle : il s'agit de modifier manuellement le placement des écoles dans
  * l'agglomération fournie en paramètre, en respectant à tout moment la contrainte d'accesibilité.
@@ -15,7 +22,7 @@ import java.io.InputStreamReader;
  * 
  * 2) Résolution automatique : le programme va modifier la configuration
  * des écoles dans l'agglomération pour donner une solution optimale au problème en utilisant un
- * algorithme. Le résultat sera affiché.
+ * algorithme. Le résultat sera affiché. Voir {@link #resolutionAutomatique()}.
  * 
  * 3) Sauvegarder : le programme demande un chemin de fichier, absolu ou relatif au répertoire
  * dans lequel il s'exécute. L'agglomération donnée au départ et la configuration des écoles
@@ -24,40 +31,166 @@ import java.io.InputStreamReader;
  * 4) Quitter : le programme s'arrêtera sans sauvegarder. Cette action peut également être
  * effectuée à tout moment en appuyant sur Ctrl+C ou Ctrl+D.
  * 
+ * 5) Améliorer la solution : une recherche locale essaie de retirer des écoles jusqu'à ce que
+ * l'utilisateur l'arrête ou que le délai soit dépassé. Voir {@link #ameliorationSolution()}.
+ * 
+ * 6) Sauvegarder les modifications : comme 3), mais seules les modifications faites depuis le
+ * chargement ou la sauvegarde précédente sont écrites, dans un fichier delta qui peut être
+ * appliqué avec l'option --delta (voir {@link FichierDelta}).
+ * 
+ * Options pouvant suivre le chemin du fichier :
+ * --rapport fichier.json : à la fin du programme, les {@link Metriques} de l'exécution (durées
+ * de lecture, de validation, de résolution, de sauvegarde...) sont écrites en JSON dans ce fichier.
+ * Ces métriques sont également consultables pendant l'exécution via JMX.
+ * --delai secondes : durée maximale d'une résolution automatique, au-delà de laquelle elle est
+ * annulée.
+ * --reprise fichier : l'état de l'amélioration de la solution est écrit régulièrement dans ce
+ * fichier, et si ce fichier a déjà été écrit pour la même agglomération, l'amélioration reprend
+ * là où elle s'était arrêtée (voir {@link SolveurAmelioration}).
+ * --cache répertoire : les solutions calculées sont écrites dans ce répertoire et y sont
+ * reprises pour une agglomération de même structure (voir {@link CacheSolutions}).
+ * 
+ * --delta fichier.delta : après la lecture de l'agglomération, les modifications de ce fichier
+ * lui sont appliquées (voir {@link Agglomeration#appliquerDelta(String)}). L'option peut être
+ * donnée plusieurs fois, les fichiers sont alors appliqués dans l'ordre.
+ * 
+ * --convertir fichier.graphe : l'agglomération lue est écrite au format binaire de
+ * {@link GrapheMappe} dans ce fichier, puis le programme s'arrête.
+ * 
+ * Avec les arguments "--graphe fichier.graphe" à la place du fichier, le programme ouvre ce
+ * graphe en le projetant en mémoire, le résout et y écrit les écoles, sans lire de fichier texte
+ * ni charger le graphe dans le tas Java. Les options --delai et --rapport restent utilisables.
+ * 
+ * Le programme peut aussi être lancé en mode serveur avec les arguments "--serveur port" à la
+ * place du fichier : il garde alors des agglomérations en mémoire et répond aux commandes
+ * de clients locaux, voir {@link Serveur}. Avec les arguments "--client port", il envoie au
+ * serveur les commandes saisies au clavier et affiche ses réponses (voir {@link Client}).
+ * 
  * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
  */
 public class Main {
 
 	/**
 	 * Il s'agit de l'objet utilisé tout au long du programme pour lire les entrées au clavier
-	 * de l'utilisateur. On utilise sa méthode readLine() via le wrapper {@link #getLigneClavier(String)}.
+	 * de l'utilisateur. Sa méthode readLine() n'est appelée que par le thread {@link #lecteurClavier},
+	 * et les lignes lues sont obtenues via le wrapper {@link #getLigneClavier(String)}.
 	 */
 	private static BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 	
+	/**
+	 * Thread qui lit le clavier ligne par ligne (voir {@link #lireClavier()}), démarré à la
+	 * première lecture. Il est le seul à lire {@link #br} : readLine() peut ainsi bloquer sans
+	 * empêcher l'affichage de l'avancement d'une résolution.
+	 */
+	private static Thread lecteurClavier;
+	
+	/**
+	 * Les lignes saisies par l'utilisateur et pas encore consommées par {@link #getLigneClavier(String)},
+	 * dans l'ordre de saisie. La fin de l'entrée y est représentée par {@link #FIN_CLAVIER}.
+	 */
+	private static final BlockingQueue<String> lignesClavier = new LinkedBlockingQueue<String>();
+	
+	/**
+	 * Marque la fin de l'entrée dans {@link #lignesClavier}. Comparée par référence, elle ne
+	 * peut pas être confondue avec une ligne saisie.
+	 */
+	private static final String FIN_CLAVIER = new String("");
+	
+	/**
+	 * L'erreur qui a arrêté la lecture du clavier, ou null.
+	 */
+	private static volatile IOException erreurClavier;
+	
+	/**
+	 * La résolution en cours, qu'une ligne saisie pendant qu'elle tourne annule au lieu d'être
+	 * transmise à {@link #getLigneClavier(String)}, ou null s'il n'y a pas de résolution en cours.
+	 */
+	private static volatile Progression resolutionEnCours;
+	
+	/**
+	 * Nombre de lignes attendues par {@link #getLigneClavier(String)} et pas encore présentes
+	 * dans {@link #lignesClavier}, protégé par {@link #verrouClavier}. Le thread
+	 * {@link #lecteurClavier} ne lit une ligne que si une ligne est attendue ou qu'une résolution
+	 * est en cours : une ligne saisie à l'avance (par exemple dans un fichier redirigé vers
+	 * l'entrée) n'est lue qu'au moment où elle est utilisée, ou au début d'une résolution pour
+	 * être gardée pour les saisies suivantes. Son rôle ne dépend donc pas de la vitesse des threads.
+	 */
+	private static int lignesAttendues = 0;
+	private static final Object verrouClavier = new Object();
+	
 	/**
 	 * Cette variable va contenir une référence à l'agglomération générée depuis
 	 * le fichier donné en argument. Elle contient tout au long du programme la même référence.
 	 */
 	private static Agglomeration agglomeration;
 	
+	/**
+	 * Chemin du fichier dans lequel écrire le rapport JSON des {@link Metriques} à la fin
+	 * du programme, donné avec l'option --rapport. Vaut null si aucun rapport n'est demandé.
+	 */
+	private static String cheminRapport;
+	
+	/**
+	 * Durée maximale d'une résolution automatique en millisecondes, donnée en secondes avec
+	 * l'option --delai. Vaut 0 s'il n'y a pas de durée maximale.
+	 */
+	private static long delaiResolutionMs = 0;
+	
+	/**
+	 * Chemin du fichier de graphe dans lequel convertir l'agglomération, donné avec l'option
+	 * --convertir. Vaut null si aucune conversion n'est demandée.
+	 */
+	private static String cheminConversion;
+	
+	/**
+	 * Fichier du point de reprise de l'amélioration de la solution, donné avec l'option
+	 * --reprise. Vaut null si aucun point de reprise n'est demandé.
+	 */
+	private static File fichierReprise;
+	
+	/**
+	 * Chemins des fichiers delta à appliquer après la lecture de l'agglomération, donnés
+	 * avec l'option --delta.
+	 */
+	private static ArrayList<String> cheminsDeltas = new ArrayList<String>();
+	
+	/**
+	 * Intervalle en millisecondes entre deux affichages de l'avancement d'une résolution.
+	 */
+	private static final long INTERVALLE_PROGRESSION_MS = 500;
+	
+	/**
+	 * Nombre maximal de villes affichées avec les écoles par le menu (voir {@link #afficherEcoles()}).
+	 */
+	private static final int LIMITE_AFFICHAGE = 100;
+	
 	/**
 	 * Cette méthode permet de quitter le programme en fermant d'abord le BufferedReader {@link #br}
-	 * utilisé pour lire les saisies de l'utilisateur. Le programme se termine avec le code
+	 * utilisé pour lire les saisies de l'utilisateur, et en écrivant le rapport des métriques si
+	 * l'option --rapport a été donnée. Le programme se termine avec le code
 	 * de retour donné dans l'argument codeDeRetour.
+	 * Si le thread {@link #lecteurClavier} est bloqué dans readLine(), le BufferedReader n'est
+	 * pas fermé : close() attendrait la fin de readLine(), et System.exit() arrête ce thread.
 	 * @param codeDeRetour : le code de retour du programme.
 	 */
 	private static void quitter(int codeDeRetour) {
-		try {
-			br.close();
-		} catch (IOException e) {
-			System.out.println("Erreur à la fermeture du BufferedReader : " + e.getLocalizedMessage());
+		if (lecteurClavier == null || !lecteurClavier.isAlive()) {
+			try {
+				br.close();
+			} catch (IOException e) {
+				System.out.println("Erreur à la fermeture du BufferedReader : " + e.getLocalizedMessage());
+			}
 		}
 		
+		if (cheminRapport != null)
+			Metriques.getInstance().ecrireRapportJson(cheminRapport);
+		
 		System.exit(codeDeRetour);
 	}
 	
 	/**
-	 * Cette méthode est un "wrapper" pour la méthode readLine() du BufferedReader {@link #br}.
+	 * Cette méthode est un "wrapper" pour la méthode readLine() du BufferedReader {@link #br},
+	 * appelée par le thread {@link #lecteurClavier}.
 	 * Elle lit et renvoie sous forme de String une ligne saisie au clavier par l'utilisateur.
 	 * Elle affiche juste avant le curseur un texte ("prompt") donné en argument.
 	 * Elle gère l'exception IOException de readLine() et détecte une fin de fichier (éventuellement
@@ -75,35 +208,119 @@ public class Main {
 		
 		do {
 			System.out.print(prompt);
+			demarrerLecteurClavier();
+			synchronized (verrouClavier) {
+				if (lignesClavier.isEmpty()) {
+					lignesAttendues++;
+					verrouClavier.notifyAll();
+				}
+			}
 			try {
-				ligne = br.readLine();
-			} catch (IOException e) {
-				System.out.println("Erreur lors de la lecture du clavier : " + e.getLocalizedMessage());
+				ligne = lignesClavier.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 				quitter(1);
 			}
-		} while (ligne != null && "".equals(ligne));
+		} while (ligne != FIN_CLAVIER && "".equals(ligne));
 		
-		if (ligne == null) {
+		if (ligne == FIN_CLAVIER) {
+			if (erreurClavier != null) {
+				System.out.println("Erreur lors de la lecture du clavier : " + erreurClavier.getLocalizedMessage());
+				quitter(1);
+			}
 			System.out.println("Fin de fichier rencontrée (Ctrl+D a probablement été saisi). Fin du programme.");
 			quitter(0);
 		}
 		return ligne;
 	}
 	
+	/**
+	 * Démarre le thread {@link #lecteurClavier} s'il ne l'est pas déjà.
+	 */
+	private static synchronized void demarrerLecteurClavier() {
+		if (lecteurClavier == null) {
+			lecteurClavier = new Thread(Main::lireClavier, "clavier");
+			lecteurClavier.setDaemon(true);
+			lecteurClavier.start();
+		}
+	}
+	
+	/**
+	 * Exécutée par le thread {@link #lecteurClavier} : lit le clavier ligne par ligne jusqu'à la
+	 * fin de l'entrée. Une ligne saisie pendant une résolution l'annule, et les lignes suivantes
+	 * ne sont lues qu'une fois la résolution terminée ; sinon, elle est transmise à
+	 * {@link #getLigneClavier(String)}. Les lignes déjà saisies au début d'une résolution (entrée
+	 * redirigée, ou saisie à l'avance) ne l'annulent pas : elles sont lues sans attendre et
+	 * gardées pour les saisies suivantes.
+	 */
+	private static void lireClavier() {
+		Progression resolutionVidee = null; // La dernière résolution au début de laquelle l'entrée a été vidée
+		try {
+			while (true) {
+				Progression resolution;
+				synchronized (verrouClavier) {
+					while (lignesAttendues == 0
+							&& (resolutionEnCours == null || resolutionEnCours.estAnnulee()))
+						verrouClavier.wait();
+					resolution = resolutionEnCours;
+				}
+				
+				if (resolution != null && resolution != resolutionVidee) {
+					resolutionVidee = resolution;
+					while (br.ready()) {
+						String ligne = br.readLine();
+						if (ligne == null)
+							break;
+						transmettre(ligne);
+					}
+				}
+				
+				String ligne = br.readLine();
+				if (ligne == null)
+					break;
+				
+				resolution = resolutionEnCours;
+				if (resolution != null)
+					resolution.annuler();
+				else
+					transmettre(ligne);
+			}
+		} catch (IOException e) {
+			erreurClavier = e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		lignesClavier.add(FIN_CLAVIER);
+	}
+	
+	/**
+	 * Ajoute une ligne lue à celles que {@link #getLigneClavier(String)} peut consommer.
+	 * @param ligne : la ligne lue.
+	 */
+	private static void transmettre(String ligne) {
+		synchronized (verrouClavier) {
+			if (lignesAttendues > 0)
+				lignesAttendues--;
+			lignesClavier.add(ligne);
+		}
+	}
+	
 	/**
 	 * Cette méthode est lancée lorsque l'utilisateur choisit "1) Résolution manuelle" dans le
 	 * menu principal. Le but est d'enlever le plus d'écoles possible, en respectant à tout moment
 	 * la contrainte d'accessibilité (voir {@link Agglomeration#retirerEcole(String)}).
 	 * L'utilisateur peut ajouter une école, enlever une école, revenir au menu principal,
-	 * remettre des écoles dans toutes les villes ou afficher les villes voisines de chaque ville.
+	 * remettre des écoles dans toutes les villes, afficher les villes voisines de chaque ville ou
+	 * écrire un rapport (voir {@link #ecrireRapport()}).
 	 * L'utilisateur ajoute ou retire des écoles en donnant le nom de la ville concernée. Avant chaque
-	 * saisie, la configuration actuelle des écoles est affichée.
+	 * saisie, la configuration actuelle des écoles est affichée (au plus {@link #LIMITE_AFFICHAGE}
+	 * villes).
 	 */
 	private static void resolutionManuelle() {
 		while (true) {
 			System.out.println("===== 1 : Ajouter une école | 2 : Retirer une école | 3 : Retour au menu principal");
-			System.out.println("===== 4 : Remettre des écoles partout | 5 : Afficher les routes");
-			agglomeration.afficherEcoles();
+			System.out.println("===== 4 : Remettre des écoles partout | 5 : Afficher les routes | 6 : Écrire un rapport");
+			afficherEcoles();
 			String choix = getLigneClavier("> ");
 			String nomVille;
 			switch (choix) {
@@ -131,6 +348,10 @@ public class Main {
 				agglomeration.afficherVoisins();
 				break;
 
+			case "6":
+				ecrireRapport();
+				break;
+
 			default:
 				System.out.println("Erreur : Choix invalide, veuillez réessayer");
 				break;
@@ -138,12 +359,245 @@ public class Main {
 		}
 	}
 	
+	/**
+	 * Affiche la configuration actuelle des écoles, pour au plus {@link #LIMITE_AFFICHAGE}
+	 * villes : une grande agglomération remplirait sinon l'écran à chaque affichage. Le reste
+	 * peut être écrit avec "6 : Écrire un rapport" de la résolution manuelle.
+	 */
+	private static void afficherEcoles() {
+		Rapport ecoles = new Rapport();
+		ecoles.setLimite(LIMITE_AFFICHAGE);
+		try (ecoles) {
+			agglomeration.afficherEcoles(ecoles);
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'affichage : " + e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * Lancée par le choix "6 : Écrire un rapport" de la résolution manuelle : demande quoi
+	 * afficher (écoles, voisins ou données de débogage), le nombre maximal de villes, le début
+	 * du nom des villes à afficher et le fichier dans lequel écrire, puis écrit le rapport
+	 * (voir {@link Rapport}).
+	 */
+	private static void ecrireRapport() {
+		System.out.println("Que faut-il écrire ? 1 : Écoles | 2 : Voisins | 3 : Données de débogage");
+		String contenu = getLigneClavier(">> ");
+		if (!"1".equals(contenu) && !"2".equals(contenu) && !"3".equals(contenu)) {
+			System.out.println("Erreur : Choix invalide");
+			return;
+		}
+		
+		System.out.println("Nombre maximal de villes (0 pour toutes) :");
+		int limite;
+		try {
+			limite = Integer.parseInt(getLigneClavier(">> "));
+		} catch (NumberFormatException e) {
+			System.out.println("Erreur : nombre invalide");
+			return;
+		}
+		System.out.println("Début du nom des villes à écrire (* pour toutes) :");
+		String prefixe = getLigneClavier(">> ");
+		System.out.println("Fichier dans lequel écrire (relatif ou absolu, - pour l'écran) :");
+		String nomDeFichier = getLigneClavier(">> ");
+		
+		try (Rapport rapport = "-".equals(nomDeFichier) ? new Rapport() : new Rapport(nomDeFichier)) {
+			rapport.setLimite(limite);
+			rapport.setPrefixe("*".equals(prefixe) ? "" : prefixe);
+			if ("1".equals(contenu))
+				agglomeration.afficherEcoles(rapport);
+			else if ("2".equals(contenu))
+				agglomeration.afficherVoisins(rapport);
+			else
+				agglomeration.debug(rapport);
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'écriture du rapport : " + e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * Cette méthode est lancée lorsque l'utilisateur choisit "2) Résolution automatique" dans le
+	 * menu principal. L'algorithme {@link Agglomeration#solutionOptimale(Progression)} est lancé
+	 * dans un autre thread, et son avancement (villes couvertes, écoles placées, temps écoulé) est
+	 * affiché régulièrement. L'utilisateur peut annuler la résolution en appuyant sur Entrée, et
+	 * elle est également annulée si le délai donné avec --delai est dépassé. En cas d'annulation,
+	 * la configuration des écoles reste celle d'avant la résolution.
+	 */
+	private static void resolutionAutomatique() {
+		System.out.println("Avant application de l'algorithme :");
+		afficherEcoles();
+		
+		Progression progression = new Progression(delaiResolutionMs);
+		if (executerAvecProgression(progression, () -> agglomeration.solutionOptimale(progression))) {
+			System.out.println("Après application de l'algorithme (" + progression + ") :");
+		} else {
+			System.out.println("Résolution annulée (" + progression + "), les écoles n'ont pas été modifiées :");
+		}
+		afficherEcoles();
+	}
+	
+	/**
+	 * Cette méthode est lancée lorsque l'utilisateur choisit "5) Améliorer la solution" dans le
+	 * menu principal. La recherche {@link Agglomeration#solutionAmelioree(Progression, File)} est
+	 * lancée dans un autre thread comme pour la résolution automatique, mais l'arrêt (Entrée ou
+	 * délai) n'annule pas le résultat : la meilleure solution trouvée jusque-là est appliquée.
+	 */
+	private static void ameliorationSolution() {
+		System.out.println("Avant amélioration :");
+		afficherEcoles();
+		
+		Progression progression = new Progression(delaiResolutionMs);
+		if (executerAvecProgression(progression, () -> agglomeration.solutionAmelioree(progression, fichierReprise))) {
+			System.out.println("Après amélioration (" + progression + ") :");
+		} else {
+			System.out.println("Amélioration annulée (" + progression + "), les écoles n'ont pas été modifiées :");
+		}
+		afficherEcoles();
+	}
+	
+	/**
+	 * Lance une résolution dans un autre thread et affiche régulièrement son avancement
+	 * jusqu'à ce qu'elle se termine. L'utilisateur peut l'annuler en appuyant sur Entrée : la
+	 * ligne est lue par le thread {@link #lecteurClavier}, qui annule la résolution lui-même.
+	 * Ce thread ne fait donc qu'afficher l'avancement et signaler le dépassement du délai.
+	 * @param progression : l'objet dans lequel la résolution publie son avancement.
+	 * @param resolution : la résolution à lancer, qui retourne true si elle a abouti.
+	 * @return la valeur retournée par la résolution, ou false si elle a été interrompue.
+	 */
+	private static boolean executerAvecProgression(Progression progression, BooleanSupplier resolution) {
+		boolean[] appliquee = new boolean[1];
+		Thread solveur = new Thread(() -> appliquee[0] = resolution.getAsBoolean(), "solveur");
+		solveur.setDaemon(true);
+		demarrerLecteurClavier();
+		synchronized (verrouClavier) {
+			resolutionEnCours = progression;
+			verrouClavier.notifyAll();
+		}
+		solveur.start();
+		
+		System.out.println("Résolution en cours, appuyez sur Entrée pour annuler.");
+		boolean delaiSignale = false;
+		try {
+			solveur.join(INTERVALLE_PROGRESSION_MS);
+			while (solveur.isAlive()) {
+				System.out.println("Avancement : " + progression);
+				if (!delaiSignale && progression.estDelaiDepasse()) {
+					System.out.println("Délai dépassé, arrêt de la résolution.");
+					delaiSignale = true;
+				}
+				solveur.join(INTERVALLE_PROGRESSION_MS);
+			}
+		} catch (InterruptedException e) {
+			progression.annuler();
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			resolutionEnCours = null;
+		}
+		return appliquee[0];
+	}
+	
+	/**
+	 * Lancée avec les arguments "--graphe fichier.graphe" : ouvre un graphe projeté en mémoire
+	 * ({@link GrapheMappe}), vérifie la contrainte d'accessibilité, le résout avec
+	 * {@link SolveurGlouton} et écrit les écoles obtenues directement dans le fichier.
+	 * @param chemin : le chemin du fichier de graphe.
+	 */
+	private static void resoudreGrapheMappe(String chemin) {
+		try (GrapheMappe graphe = new GrapheMappe(chemin)) {
+			int nonCouvertes = Validation.villesNonCouvertes(graphe).cardinality();
+			System.out.println(graphe.getNombreDeVilles() + " villes, configuration des écoles "
+					+ (nonCouvertes == 0 ? "valide" : "invalide (" + nonCouvertes + " villes non couvertes)"));
+			
+			Progression progression = new Progression(delaiResolutionMs);
+			BitSet[] ecoles = new BitSet[1];
+			if (executerAvecProgression(progression,
+					() -> (ecoles[0] = SolveurGlouton.resoudre(graphe, progression)) != null)) {
+				SolveurGlouton.appliquer(graphe, ecoles[0]);
+				System.out.println("Écoles enregistrées dans le fichier (" + progression + ")");
+			} else {
+				System.out.println("Résolution annulée (" + progression + "), les écoles n'ont pas été modifiées");
+			}
+		} catch (IOException e) {
+			System.out.println("Erreur avec le fichier de graphe : " + e.getLocalizedMessage());
+			quitter(1);
+		}
+	}
+	
+	/**
+	 * Lit le port donné dans args[1] pour les modes serveur et client, et arrête le programme
+	 * s'il est absent ou invalide.
+	 * @param args : les arguments donnés au programme, de la forme "--serveur port" ou "--client port".
+	 * @return le port.
+	 */
+	private static int lirePort(String[] args) {
+		int port = -1;
+		try {
+			if (args.length == 2)
+				port = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			port = -1; // Traité ci-dessous comme un port invalide
+		}
+		if (port < 0 || port > 65535) {
+			System.out.println("Erreur : veuillez donner un port valide après " + args[0]);
+			quitter(1);
+		}
+		return port;
+	}
+	
+	/**
+	 * Lance le mode serveur sur le port donné dans args[1]. Le serveur s'exécute jusqu'à ce
+	 * qu'un client envoie la commande arreter, ou jusqu'à l'arrêt du programme (Ctrl+C), qui
+	 * ferme aussi proprement les connexions.
+	 * @param args : les arguments donnés au programme, de la forme "--serveur port".
+	 */
+	private static void lancerServeur(String[] args) {
+		int port = lirePort(args);
+		
+		try {
+			Serveur serveur = new Serveur(port, Runtime.getRuntime().availableProcessors());
+			Runtime.getRuntime().addShutdownHook(new Thread(serveur::arreter, "arret-serveur"));
+			serveur.lancer();
+			System.out.println("Serveur arrêté");
+		} catch (IOException e) {
+			System.out.println("Erreur au démarrage du serveur : " + e.getLocalizedMessage());
+			quitter(1);
+		}
+		quitter(0);
+	}
+	
+	/**
+	 * Lance le mode client sur le port donné dans args[1] : chaque ligne saisie au clavier est
+	 * envoyée au serveur local ({@link Client}) et sa réponse est affichée, jusqu'aux commandes
+	 * quitter ou arreter, ou jusqu'à la fin de l'entrée.
+	 * @param args : les arguments donnés au programme, de la forme "--client port".
+	 */
+	private static void lancerClient(String[] args) {
+		int port = lirePort(args);
+		
+		try (Client client = new Client(port)) {
+			while (true) {
+				String commande = getLigneClavier("> ");
+				System.out.println(client.envoyer(commande));
+				if ("quitter".equals(commande.trim()) || "arreter".equals(commande.trim()))
+					break;
+			}
+		} catch (IOException e) {
+			System.out.println("Erreur de communication avec le serveur : " + e.getLocalizedMessage());
+			quitter(1);
+		}
+		quitter(0);
+	}
+	
 	/**
 	 * Le point d'entrée du programme. D'abord, un objet agglomération est généré à partir du
 	 * fichier passé dans le premier argument args[0]. Ensuite, on rentre dans une boucle
 	 * qui affiche les choix du menu principal et demande à l'utilisateur de choisir une option.
 	 * @param args : les arguments donnés au programme. Le premier argument doit être un nom de fichier
 	 * relatif ou absolu décrivant textuellement une agglomération, et éventuellement ses écoles.
+	 * Il peut être suivi des options décrites dans la documentation de cette classe.
+	 * Avec les arguments "--serveur port" ou "--client port", le programme est lancé en mode
+	 * serveur ou client.
 	 */
 	public static void main(String[] args) {
 		if (args.length == 0) {
@@ -151,6 +605,50 @@ public class Main {
 			quitter(1);
 		}
 		
+		if ("--serveur".equals(args[0])) {
+			lancerServeur(args);
+			return;
+		}
+		if ("--client".equals(args[0])) {
+			lancerClient(args);
+			return;
+		}
+		
+		boolean modeGraphe = "--graphe".equals(args[0]);
+		if (modeGraphe && args.length < 2) {
+			System.out.println("Erreur : veuillez donner un fichier de graphe après --graphe");
+			quitter(1);
+		}
+		
+		for (int i = modeGraphe ? 2 : 1; i < args.length; i++) {
+			if ("--rapport".equals(args[i]) && i + 1 < args.length) {
+				cheminRapport = args[++i];
+			} else if ("--reprise".equals(args[i]) && i + 1 < args.length) {
+				fichierReprise = new File(args[++i]);
+			} else if ("--delta".equals(args[i]) && i + 1 < args.length) {
+				cheminsDeltas.add(args[++i]);
+			} else if ("--convertir".equals(args[i]) && i + 1 < args.length) {
+				cheminConversion = args[++i];
+			} else if ("--cache".equals(args[i]) && i + 1 < args.length) {
+				CacheSolutions.getInstance().setRepertoire(new File(args[++i]));
+			} else if ("--delai".equals(args[i]) && i + 1 < args.length) {
+				try {
+					delaiResolutionMs = Long.parseLong(args[++i]) * 1000;
+				} catch (NumberFormatException e) {
+					System.out.println("Erreur : délai invalide : " + args[i]);
+					quitter(1);
+				}
+			} else {
+				System.out.println("Erreur : option invalide : " + args[i]);
+				quitter(1);
+			}
+		}
+		
+		if (modeGraphe) {
+			resoudreGrapheMappe(args[1]);
+			quitter(0);
+		}
+		
 		agglomeration = Agglomeration.getInstance();
 		
 		try {
@@ -163,8 +661,33 @@ public class Main {
 			quitter(1);
 		}
 		
+		for (String cheminDelta : cheminsDeltas) {
+			try {
+				agglomeration.appliquerDelta(cheminDelta);
+				System.out.println("Modifications de " + cheminDelta + " appliquées");
+			} catch (SyntaxeFichierInvalideException e) {
+				System.out.println("Erreur dans la syntaxe du fichier " + cheminDelta + " : " + e.getLocalizedMessage());
+				quitter(1);
+			} catch (IOException e) {
+				System.out.println("Erreur lors de la lecture du fichier " + cheminDelta + " : " + e.getLocalizedMessage());
+				quitter(1);
+			}
+		}
+		
+		if (cheminConversion != null) {
+			try {
+				GrapheMappe.ecrire(agglomeration, cheminConversion);
+				System.out.println("Graphe écrit dans " + cheminConversion);
+				quitter(0);
+			} catch (IOException e) {
+				System.out.println("Erreur lors de l'écriture du graphe : " + e.getLocalizedMessage());
+				quitter(1);
+			}
+		}
+		
 		while (true) {
 			System.out.println("===== 1 : Résoudre manuellement | 2 : Résoudre automatiquement | 3 : Sauvegarder | 4 : Quitter");
+			System.out.println("===== 5 : Améliorer la solution | 6 : Sauvegarder les modifications");
 			String choix = getLigneClavier("> ");
 			
 			switch (choix) {
@@ -174,11 +697,7 @@ public class Main {
 				break;
 				
 			case "2":
-				System.out.println("Avant application de l'algorithme :");
-				agglomeration.afficherEcoles();
-				agglomeration.solutionOptimale();
-				System.out.println("Après application de l'algorithme (actuellement) :");
-				agglomeration.afficherEcoles();
+				resolutionAutomatique();
 				break;
 			
 			case "3":
@@ -190,6 +709,15 @@ public class Main {
 			case "4":
 				quitter(0);
 				break;
+				
+			case "5":
+				ameliorationSolution();
+				break;
+				
+			case "6":
+				System.out.println("Veuillez saisir le nom du fichier delta dans lequel écrire les modifications (relatif ou absolu) :");
+				agglomeration.sauvegardeModifications(getLigneClavier(">> "));
+				break;
 			
 			default:
 				System.out.println("Erreur : Choix invalide, veuillez réessayer");
@@ -0,0 +1,388 @@
+package projet_poo;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Ceci est une classe singleton qui regroupe les compteurs et chronomètres du
+ * programme : lecture du fichier, construction du graphe, vérification de
+ * l'accessibilité, résolution, amélioration des solutions et sauvegarde. Les
+ * compteurs sont des AtomicLong pour pouvoir être mis à jour depuis plusieurs
+ * threads. Les durées sont stockées en nanosecondes (obtenues avec System.nanoTime()).
+ *
+ * L'instance est enregistrée auprès du serveur JMX de la JVM à sa création, et
+ * peut être écrite dans un rapport JSON avec {@link #ecrireRapportJson(String)}.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class Metriques implements MetriquesMBean {
+
+	/**
+	 * Nom sous lequel l'instance est enregistrée auprès du serveur JMX.
+	 */
+	public static final String NOM_JMX = "projet_poo:type=Metriques";
+
+	/**
+	 * Attribut d'une classe singleton : unique instance de la classe Metriques.
+	 */
+	private static Metriques INSTANCE;
+
+	/**
+	 * Nombre de lignes lues dans les fichiers d'agglomération.
+	 */
+	private final AtomicLong lignesLues = new AtomicLong();
+
+	/**
+	 * Durée totale de lecture des fichiers, en nanosecondes.
+	 */
+	private final AtomicLong dureeLecture = new AtomicLong();
+
+	/**
+	 * Durée passée à ajouter les routes aux listes d'adjacence, une fois le fichier lu,
+	 * en nanosecondes.
+	 */
+	private final AtomicLong dureeConstructionGraphe = new AtomicLong();
+
+	/**
+	 * Durée des vérifications de la contrainte d'accessibilité, en nanosecondes.
+	 */
+	private final AtomicLong dureeValidation = new AtomicLong();
+
+	/**
+	 * Durée passée dans l'algorithme de résolution, en nanosecondes.
+	 */
+	private final AtomicLong dureeResolution = new AtomicLong();
+
+	/**
+	 * Nombre de tours de boucle de l'algorithme de résolution.
+	 */
+	private final AtomicLong iterationsSolveur = new AtomicLong();
+
+	/**
+	 * Nombre de villes candidates dont le score a été calculé.
+	 */
+	private final AtomicLong candidatesEvaluees = new AtomicLong();
+
+	/**
+	 * Nombre d'écoles placées par l'algorithme de résolution.
+	 */
+	private final AtomicLong ecolesPlacees = new AtomicLong();
+
+	/**
+	 * Nombre d'itérations de la recherche locale de {@link SolveurAmelioration}, et durée
+	 * de cette recherche en nanosecondes (sans la solution de départ, comptée dans la résolution).
+	 */
+	private final AtomicLong iterationsAmelioration = new AtomicLong();
+	private final AtomicLong dureeAmelioration = new AtomicLong();
+
+	/**
+	 * Nombre de solutions trouvées dans le {@link CacheSolutions}.
+	 */
+	private final AtomicLong succesCache = new AtomicLong();
+
+	/**
+	 * Nombre de solutions cherchées sans succès dans le {@link CacheSolutions}.
+	 */
+	private final AtomicLong echecsCache = new AtomicLong();
+
+	/**
+	 * Nombre d'octets écrits par les sauvegardes.
+	 */
+	private final AtomicLong octetsSauvegardes = new AtomicLong();
+
+	/**
+	 * Durée totale des sauvegardes, en nanosecondes.
+	 */
+	private final AtomicLong dureeSauvegarde = new AtomicLong();
+
+	/**
+	 * Constructeur privé pour que cette classe soit un singleton.
+	 */
+	private Metriques() {
+	}
+
+	/**
+	 * Attribut d'une classe singleton : charge l'unique instance de la
+	 * classe en mémoire si ce n'est pas déja fait, l'enregistre auprès du
+	 * serveur JMX, et la retourne.
+	 *
+	 * @return : l'unique instance de Metriques.
+	 */
+	public static synchronized Metriques getInstance() {
+		if (INSTANCE == null) {
+			INSTANCE = new Metriques();
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(NOM_JMX));
+			} catch (JMException e) {
+				System.out.println("Erreur lors de l'enregistrement JMX des métriques : " + e.getLocalizedMessage());
+			}
+		}
+
+		return INSTANCE;
+	}
+
+	/**
+	 * Enregistre la lecture d'un fichier d'agglomération.
+	 *
+	 * @param lignes : le nombre de lignes lues.
+	 * @param dureeNanos : la durée de la lecture.
+	 */
+	public void ajouterLecture(long lignes, long dureeNanos) {
+		lignesLues.addAndGet(lignes);
+		dureeLecture.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * @param dureeNanos : la durée de construction des listes d'adjacence.
+	 */
+	public void ajouterConstructionGraphe(long dureeNanos) {
+		dureeConstructionGraphe.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * @param dureeNanos : la durée d'une vérification de la contrainte d'accessibilité.
+	 */
+	public void ajouterValidation(long dureeNanos) {
+		dureeValidation.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * Enregistre une exécution de l'algorithme de résolution.
+	 *
+	 * @param iterations : le nombre de tours de boucle de l'algorithme.
+	 * @param candidates : le nombre de villes candidates dont le score a été calculé.
+	 * @param ecoles : le nombre d'écoles placées.
+	 * @param dureeNanos : la durée de la résolution.
+	 */
+	public void ajouterResolution(long iterations, long candidates, long ecoles, long dureeNanos) {
+		iterationsSolveur.addAndGet(iterations);
+		candidatesEvaluees.addAndGet(candidates);
+		ecolesPlacees.addAndGet(ecoles);
+		dureeResolution.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * Enregistre une recherche locale de {@link SolveurAmelioration}.
+	 *
+	 * @param iterations : le nombre d'itérations de la recherche.
+	 * @param dureeNanos : la durée de la recherche.
+	 */
+	public void ajouterAmelioration(long iterations, long dureeNanos) {
+		iterationsAmelioration.addAndGet(iterations);
+		dureeAmelioration.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * Enregistre une consultation du cache des solutions.
+	 *
+	 * @param succes : true si la solution était dans le cache, false sinon.
+	 */
+	public void ajouterConsultationCache(boolean succes) {
+		if (succes)
+			succesCache.incrementAndGet();
+		else
+			echecsCache.incrementAndGet();
+	}
+
+	/**
+	 * Enregistre une sauvegarde de fichier.
+	 *
+	 * @param octets : la taille du fichier écrit.
+	 * @param dureeNanos : la durée de l'écriture.
+	 */
+	public void ajouterSauvegarde(long octets, long dureeNanos) {
+		octetsSauvegardes.addAndGet(octets);
+		dureeSauvegarde.addAndGet(dureeNanos);
+	}
+
+	/**
+	 * Convertit une durée en nanosecondes en millisecondes.
+	 */
+	private static double enMs(AtomicLong nanos) {
+		return nanos.get() / 1e6;
+	}
+
+	/**
+	 * Calcule un débit par seconde, ou 0 si la durée est nulle.
+	 */
+	private static double parSeconde(AtomicLong quantite, AtomicLong nanos) {
+		long duree = nanos.get();
+		if (duree == 0)
+			return 0;
+		return quantite.get() * 1e9 / duree;
+	}
+
+	@Override
+	public long getLignesLues() {
+		return lignesLues.get();
+	}
+
+	@Override
+	public double getDureeLectureMs() {
+		return enMs(dureeLecture);
+	}
+
+	@Override
+	public double getLignesParSeconde() {
+		return parSeconde(lignesLues, dureeLecture);
+	}
+
+	@Override
+	public double getDureeConstructionGrapheMs() {
+		return enMs(dureeConstructionGraphe);
+	}
+
+	@Override
+	public double getDureeValidationMs() {
+		return enMs(dureeValidation);
+	}
+
+	@Override
+	public double getDureeResolutionMs() {
+		return enMs(dureeResolution);
+	}
+
+	@Override
+	public long getIterationsSolveur() {
+		return iterationsSolveur.get();
+	}
+
+	@Override
+	public long getCandidatesEvaluees() {
+		return candidatesEvaluees.get();
+	}
+
+	@Override
+	public long getEcolesPlacees() {
+		return ecolesPlacees.get();
+	}
+
+	@Override
+	public long getIterationsAmelioration() {
+		return iterationsAmelioration.get();
+	}
+
+	@Override
+	public double getDureeAmeliorationMs() {
+		return enMs(dureeAmelioration);
+	}
+
+	@Override
+	public double getIterationsAmeliorationParSeconde() {
+		return parSeconde(iterationsAmelioration, dureeAmelioration);
+	}
+
+	@Override
+	public long getPicMemoireOctets() {
+		long pic = 0;
+		for (MemoryPoolMXBean zone : ManagementFactory.getMemoryPoolMXBeans())
+			if (zone.getType() == MemoryType.HEAP && zone.isValid())
+				pic += zone.getPeakUsage().getUsed();
+		return pic;
+	}
+
+	@Override
+	public long getSuccesCache() {
+		return succesCache.get();
+	}
+
+	@Override
+	public long getEchecsCache() {
+		return echecsCache.get();
+	}
+
+	@Override
+	public long getOctetsSauvegardes() {
+		return octetsSauvegardes.get();
+	}
+
+	@Override
+	public double getDureeSauvegardeMs() {
+		return enMs(dureeSauvegarde);
+	}
+
+	@Override
+	public double getDebitSauvegardeOctetsParSeconde() {
+		return parSeconde(octetsSauvegardes, dureeSauvegarde);
+	}
+
+	@Override
+	public String versJson() {
+		StringBuilder sb = new StringBuilder("{\n");
+		sb.append("  \"lignesLues\": ").append(getLignesLues()).append(",\n");
+		sb.append("  \"dureeLectureMs\": ").append(formater(getDureeLectureMs())).append(",\n");
+		sb.append("  \"lignesParSeconde\": ").append(formater(getLignesParSeconde())).append(",\n");
+		sb.append("  \"dureeConstructionGrapheMs\": ").append(formater(getDureeConstructionGrapheMs())).append(",\n");
+		sb.append("  \"dureeValidationMs\": ").append(formater(getDureeValidationMs())).append(",\n");
+		sb.append("  \"dureeResolutionMs\": ").append(formater(getDureeResolutionMs())).append(",\n");
+		sb.append("  \"iterationsSolveur\": ").append(getIterationsSolveur()).append(",\n");
+		sb.append("  \"candidatesEvaluees\": ").append(getCandidatesEvaluees()).append(",\n");
+		sb.append("  \"ecolesPlacees\": ").append(getEcolesPlacees()).append(",\n");
+		sb.append("  \"iterationsAmelioration\": ").append(getIterationsAmelioration()).append(",\n");
+		sb.append("  \"dureeAmeliorationMs\": ").append(formater(getDureeAmeliorationMs())).append(",\n");
+		sb.append("  \"iterationsAmeliorationParSeconde\": ")
+				.append(formater(getIterationsAmeliorationParSeconde())).append(",\n");
+		sb.append("  \"picMemoireOctets\": ").append(getPicMemoireOctets()).append(",\n");
+		sb.append("  \"succesCache\": ").append(getSuccesCache()).append(",\n");
+		sb.append("  \"echecsCache\": ").append(getEchecsCache()).append(",\n");
+		sb.append("  \"octetsSauvegardes\": ").append(getOctetsSauvegardes()).append(",\n");
+		sb.append("  \"dureeSauvegardeMs\": ").append(formater(getDureeSauvegardeMs())).append(",\n");
+		sb.append("  \"debitSauvegardeOctetsParSeconde\": ")
+				.append(formater(getDebitSauvegardeOctetsParSeconde())).append("\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Formate un nombre décimal avec un point, quelle que soit la langue du système.
+	 */
+	private static String formater(double valeur) {
+		return String.format(Locale.ROOT, "%.3f", valeur);
+	}
+
+	@Override
+	public void reinitialiser() {
+		lignesLues.set(0);
+		dureeLecture.set(0);
+		dureeConstructionGraphe.set(0);
+		dureeValidation.set(0);
+		dureeResolution.set(0);
+		iterationsSolveur.set(0);
+		candidatesEvaluees.set(0);
+		ecolesPlacees.set(0);
+		iterationsAmelioration.set(0);
+		dureeAmelioration.set(0);
+		succesCache.set(0);
+		echecsCache.set(0);
+		octetsSauvegardes.set(0);
+		dureeSauvegarde.set(0);
+		for (MemoryPoolMXBean zone : ManagementFactory.getMemoryPoolMXBeans())
+			if (zone.getType() == MemoryType.HEAP && zone.isValid())
+				zone.resetPeakUsage();
+	}
+
+	/**
+	 * Écrit le rapport JSON des métriques ({@link #versJson()}) dans le fichier donné
+	 * en argument. Crée le fichier si nécessaire, et le vide avant d'écrire dedans.
+	 * Si une erreur est rencontrée lors de l'écriture, celle-ci sera affichée.
+	 *
+	 * @param cheminDuFichier : le chemin du fichier, relatif ou absolu, dans lequel écrire.
+	 */
+	public void ecrireRapportJson(String cheminDuFichier) {
+		try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(cheminDuFichier)))) {
+			pw.print(versJson());
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'écriture du rapport : " + e.getLocalizedMessage());
+		}
+	}
+}
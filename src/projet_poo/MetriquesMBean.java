@@ -0,0 +1,117 @@
+package projet_poo;
+
+/**
+ * Interface de gestion JMX (MBean standard) des {@link Metriques} du programme.
+ * Chaque getter devient un attribut en lecture seule visible dans un client JMX
+ * (jconsole, VisualVM...) sous le nom "projet_poo:type=Metriques". Les durées
+ * sont données en millisecondes.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public interface MetriquesMBean {
+
+	/**
+	 * @return le nombre de lignes lues dans les fichiers d'agglomération.
+	 */
+	long getLignesLues();
+
+	/**
+	 * @return la durée totale de lecture des fichiers d'agglomération, sans l'ajout des routes
+	 * aux listes d'adjacence.
+	 */
+	double getDureeLectureMs();
+
+	/**
+	 * @return le nombre de lignes lues par seconde de lecture.
+	 */
+	double getLignesParSeconde();
+
+	/**
+	 * @return la durée passée à ajouter les routes aux listes d'adjacence, après la lecture
+	 * du fichier (elle n'est pas comptée dans {@link #getDureeLectureMs()}).
+	 */
+	double getDureeConstructionGrapheMs();
+
+	/**
+	 * @return la durée passée à vérifier la contrainte d'accessibilité.
+	 */
+	double getDureeValidationMs();
+
+	/**
+	 * @return la durée totale passée dans l'algorithme de résolution.
+	 */
+	double getDureeResolutionMs();
+
+	/**
+	 * @return le nombre de tours de boucle effectués par l'algorithme de résolution.
+	 */
+	long getIterationsSolveur();
+
+	/**
+	 * @return le nombre de villes candidates dont le score a été calculé.
+	 */
+	long getCandidatesEvaluees();
+
+	/**
+	 * @return le nombre d'écoles placées par l'algorithme de résolution.
+	 */
+	long getEcolesPlacees();
+
+	/**
+	 * @return le nombre d'itérations de la recherche locale qui améliore les solutions
+	 * (elles ne sont pas comptées dans {@link #getIterationsSolveur()}).
+	 */
+	long getIterationsAmelioration();
+
+	/**
+	 * @return la durée totale de la recherche locale, sans le calcul de sa solution de départ.
+	 */
+	double getDureeAmeliorationMs();
+
+	/**
+	 * @return le nombre d'itérations de la recherche locale par seconde.
+	 */
+	double getIterationsAmeliorationParSeconde();
+
+	/**
+	 * @return la somme des pics d'utilisation des zones du tas, tenus à jour par la JVM
+	 * (y compris entre deux phases), en octets. Les zones n'atteignant pas leur pic au même
+	 * moment, c'est un majorant du pic réel du tas.
+	 */
+	long getPicMemoireOctets();
+
+	/**
+	 * @return le nombre de solutions trouvées dans le cache des solutions.
+	 */
+	long getSuccesCache();
+
+	/**
+	 * @return le nombre de solutions cherchées sans succès dans le cache des solutions.
+	 */
+	long getEchecsCache();
+
+	/**
+	 * @return le nombre d'octets écrits par les sauvegardes.
+	 */
+	long getOctetsSauvegardes();
+
+	/**
+	 * @return la durée totale des sauvegardes.
+	 */
+	double getDureeSauvegardeMs();
+
+	/**
+	 * @return le nombre d'octets écrits par seconde de sauvegarde.
+	 */
+	double getDebitSauvegardeOctetsParSeconde();
+
+	/**
+	 * @return l'ensemble des métriques sous la forme d'un objet JSON.
+	 */
+	String versJson();
+
+	/**
+	 * Remet tous les compteurs à zéro, et le pic mémoire à la taille actuellement utilisée du tas.
+	 */
+	void reinitialiser();
+}
@@ -0,0 +1,227 @@
+package projet_poo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+
+/**
+ * L'état d'une recherche de {@link SolveurAmelioration} à un instant donné, écrit
+ * régulièrement dans un fichier pour pouvoir reprendre la recherche après un arrêt du
+ * programme. Un objet de cette classe est une copie : il n'est plus modifié par la recherche
+ * et peut être écrit par un autre thread.
+ *
+ * Format du fichier (entiers en big-endian, écrits avec DataOutputStream) : nombre magique,
+ * version, empreinte du graphe (voir {@link Agglomeration#getEmpreinte()}), empreinte de
+ * l'ordre des villes (voir {@link Agglomeration#getEmpreinteOrdre(Graphe)}), nombre de
+ * villes, nombre d'itérations, état du générateur aléatoire, borne inférieure et taille de
+ * la meilleure solution, puis la meilleure solution et la solution courante, chacune sous
+ * forme d'un long[] avec un bit par ville, et enfin les écoles que la recherche peut retirer,
+ * dans l'ordre où elle les tire au hasard (un int par école). Le fichier fait donc environ
+ * un quart d'octet par ville et quatre octets par école.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class PointDeReprise {
+
+	/**
+	 * Nombre magique au début des fichiers de point de reprise ("REPRISE1" en ASCII).
+	 */
+	private static final long MAGIQUE = 0x5245505249534531L;
+
+	/**
+	 * Version du format du fichier.
+	 */
+	private static final int VERSION = 2;
+
+	private final String empreinte;
+	private final String empreinteOrdre;
+	private final int nombreDeVilles;
+	private final long iterations;
+	private final long etatAleatoire;
+	private final int borneInferieure;
+	private final BitSet meilleure;
+	private final BitSet courante;
+	private final int[] retirables;
+
+	/**
+	 * Crée un point de reprise. Les ensembles donnés ne doivent plus être modifiés ensuite.
+	 *
+	 * @param empreinte : l'empreinte de la structure du graphe.
+	 * @param empreinteOrdre : l'empreinte de l'ordre des villes (voir
+	 * {@link Agglomeration#getEmpreinteOrdre(Graphe)}), les solutions étant stockées par
+	 * indice de ville.
+	 * @param nombreDeVilles : le nombre de villes du graphe.
+	 * @param iterations : le nombre d'itérations déjà effectuées.
+	 * @param etatAleatoire : l'état du générateur aléatoire de la recherche.
+	 * @param borneInferieure : un nombre d'écoles en dessous duquel aucune solution n'existe.
+	 * @param meilleure : la meilleure solution trouvée.
+	 * @param courante : la solution sur laquelle la recherche travaille.
+	 * @param retirables : les écoles de la solution courante que la recherche peut retirer,
+	 * dans l'ordre de son tirage au hasard.
+	 */
+	PointDeReprise(String empreinte, String empreinteOrdre, int nombreDeVilles, long iterations, long etatAleatoire,
+			int borneInferieure, BitSet meilleure, BitSet courante, int[] retirables) {
+		this.empreinte = empreinte;
+		this.empreinteOrdre = empreinteOrdre;
+		this.nombreDeVilles = nombreDeVilles;
+		this.iterations = iterations;
+		this.etatAleatoire = etatAleatoire;
+		this.borneInferieure = borneInferieure;
+		this.meilleure = meilleure;
+		this.courante = courante;
+		this.retirables = retirables;
+	}
+
+	/**
+	 * @param empreinte : l'empreinte de la structure du graphe.
+	 * @param empreinteOrdre : l'empreinte de l'ordre des villes.
+	 * @param nombreDeVilles : le nombre de villes du graphe.
+	 * @return true si ce point de reprise a été écrit pour ce graphe, avec les villes dans le
+	 * même ordre.
+	 */
+	boolean correspondA(String empreinte, String empreinteOrdre, int nombreDeVilles) {
+		return this.empreinte.equals(empreinte) && this.empreinteOrdre.equals(empreinteOrdre)
+				&& this.nombreDeVilles == nombreDeVilles;
+	}
+
+	/**
+	 * @return le nombre d'itérations déjà effectuées.
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return l'état du générateur aléatoire de la recherche.
+	 */
+	long getEtatAleatoire() {
+		return etatAleatoire;
+	}
+
+	/**
+	 * @return un nombre d'écoles en dessous duquel aucune solution n'existe.
+	 */
+	public int getBorneInferieure() {
+		return borneInferieure;
+	}
+
+	/**
+	 * @return le nombre d'écoles de la meilleure solution trouvée.
+	 */
+	public int getBorneSuperieure() {
+		return meilleure.cardinality();
+	}
+
+	/**
+	 * @return une copie de la meilleure solution trouvée.
+	 */
+	BitSet getMeilleure() {
+		return (BitSet) meilleure.clone();
+	}
+
+	/**
+	 * @return une copie de la solution sur laquelle la recherche travaillait.
+	 */
+	BitSet getCourante() {
+		return (BitSet) courante.clone();
+	}
+
+	/**
+	 * @return une copie des écoles que la recherche pouvait retirer, dans l'ordre de son tirage
+	 * au hasard.
+	 */
+	int[] getRetirables() {
+		return retirables.clone();
+	}
+
+	/**
+	 * Écrit ce point de reprise dans un fichier temporaire puis le renomme, pour que le
+	 * fichier ne contienne jamais un point de reprise à moitié écrit si le programme s'arrête
+	 * pendant l'écriture.
+	 *
+	 * @param fichier : le fichier dans lequel écrire.
+	 *
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public void ecrire(File fichier) throws IOException {
+		File temporaire = new File(fichier.getPath() + ".tmp");
+		try (DataOutputStream sortie = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temporaire), 1 << 16))) {
+			sortie.writeLong(MAGIQUE);
+			sortie.writeInt(VERSION);
+			sortie.writeUTF(empreinte);
+			sortie.writeUTF(empreinteOrdre);
+			sortie.writeInt(nombreDeVilles);
+			sortie.writeLong(iterations);
+			sortie.writeLong(etatAleatoire);
+			sortie.writeInt(borneInferieure);
+			sortie.writeInt(meilleure.cardinality());
+			ecrireEnsemble(sortie, meilleure);
+			ecrireEnsemble(sortie, courante);
+			sortie.writeInt(retirables.length);
+			for (int ville : retirables)
+				sortie.writeInt(ville);
+		}
+		Files.move(temporaire.toPath(), fichier.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Lit un point de reprise écrit par {@link #ecrire(File)}.
+	 *
+	 * @param fichier : le fichier à lire.
+	 * @return le point de reprise.
+	 *
+	 * @throws IOException : lancée si le fichier ne peut pas être lu ou n'est pas un point de reprise.
+	 */
+	public static PointDeReprise lire(File fichier) throws IOException {
+		try (DataInputStream entree = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(fichier), 1 << 16))) {
+			if (entree.readLong() != MAGIQUE || entree.readInt() != VERSION)
+				throw new IOException("Ce n'est pas un point de reprise : " + fichier);
+			String empreinte = entree.readUTF();
+			String empreinteOrdre = entree.readUTF();
+			int nombreDeVilles = entree.readInt();
+			long iterations = entree.readLong();
+			long etatAleatoire = entree.readLong();
+			int borneInferieure = entree.readInt();
+			int tailleMeilleure = entree.readInt();
+			BitSet meilleure = lireEnsemble(entree);
+			BitSet courante = lireEnsemble(entree);
+			int nombreRetirables = entree.readInt();
+			if (meilleure.cardinality() != tailleMeilleure || nombreRetirables < 0
+					|| nombreRetirables > courante.cardinality())
+				throw new IOException("Point de reprise corrompu : " + fichier);
+			int[] retirables = new int[nombreRetirables];
+			for (int i = 0; i < retirables.length; i++)
+				retirables[i] = entree.readInt();
+			return new PointDeReprise(empreinte, empreinteOrdre, nombreDeVilles, iterations, etatAleatoire,
+					borneInferieure, meilleure, courante, retirables);
+		}
+	}
+
+	private static void ecrireEnsemble(DataOutputStream sortie, BitSet ensemble) throws IOException {
+		long[] mots = ensemble.toLongArray();
+		sortie.writeInt(mots.length);
+		for (long mot : mots)
+			sortie.writeLong(mot);
+	}
+
+	private static BitSet lireEnsemble(DataInputStream entree) throws IOException {
+		int longueur = entree.readInt();
+		if (longueur < 0)
+			throw new IOException("Point de reprise corrompu");
+		long[] mots = new long[longueur];
+		for (int i = 0; i < mots.length; i++)
+			mots[i] = entree.readLong();
+		return BitSet.valueOf(mots);
+	}
+}
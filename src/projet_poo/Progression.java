@@ -0,0 +1,138 @@
+package projet_poo;
+
+/**
+ * Représente l'avancement d'un algorithme de résolution lancé dans un autre thread
+ * (voir {@link Agglomeration#solutionOptimale(Progression)}). L'algorithme publie
+ * régulièrement le nombre de villes couvertes et le nombre d'écoles placées, que le
+ * thread appelant peut lire à tout moment. Le thread appelant peut demander l'arrêt
+ * de l'algorithme avec {@link #annuler()}, et un délai maximal peut être fixé à la
+ * création : l'algorithme vérifie {@link #estAnnulee()} à chaque tour de boucle et
+ * s'arrête alors sans modifier les écoles de l'agglomération.
+ *
+ * Les attributs modifiés par un thread et lus par l'autre sont volatile.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public class Progression {
+
+	/**
+	 * Instant (en nanosecondes, voir System.nanoTime()) de création de cet objet.
+	 */
+	private final long debut;
+
+	/**
+	 * Instant (en nanosecondes) à partir duquel l'algorithme doit s'arrêter,
+	 * ou 0 s'il n'y a pas de délai maximal.
+	 */
+	private final long echeance;
+
+	/**
+	 * true si l'arrêt de l'algorithme a été demandé avec {@link #annuler()}.
+	 */
+	private volatile boolean annulee = false;
+
+	/**
+	 * Nombre de villes qui respectent actuellement la contrainte d'accessibilité
+	 * dans la solution en cours de construction.
+	 */
+	private volatile int villesCouvertes = 0;
+
+	/**
+	 * Nombre total de villes de l'agglomération.
+	 */
+	private volatile int nombreDeVilles = 0;
+
+	/**
+	 * Nombre d'écoles placées dans la solution en cours de construction.
+	 */
+	private volatile int nombreEcoles = 0;
+
+	/**
+	 * Crée une progression sans délai maximal.
+	 */
+	public Progression() {
+		this(0);
+	}
+
+	/**
+	 * Crée une progression avec un délai maximal.
+	 *
+	 * @param delaiMs : le délai en millisecondes au-delà duquel l'algorithme doit
+	 * s'arrêter, ou 0 (ou moins) pour ne pas avoir de délai.
+	 */
+	public Progression(long delaiMs) {
+		debut = System.nanoTime();
+		echeance = delaiMs > 0 ? debut + delaiMs * 1_000_000 : 0;
+	}
+
+	/**
+	 * Demande l'arrêt de l'algorithme. Celui-ci s'arrêtera au prochain tour de boucle.
+	 */
+	public void annuler() {
+		annulee = true;
+	}
+
+	/**
+	 * @return true si l'arrêt a été demandé ou si le délai maximal est dépassé.
+	 */
+	public boolean estAnnulee() {
+		return annulee || estDelaiDepasse();
+	}
+
+	/**
+	 * @return true si un délai maximal a été fixé et qu'il est dépassé.
+	 */
+	public boolean estDelaiDepasse() {
+		return echeance != 0 && System.nanoTime() - echeance >= 0;
+	}
+
+	/**
+	 * Publie l'avancement de l'algorithme. Appelée par l'algorithme uniquement.
+	 *
+	 * @param villesCouvertes : le nombre de villes couvertes.
+	 * @param nombreDeVilles : le nombre total de villes.
+	 * @param nombreEcoles : le nombre d'écoles placées.
+	 */
+	void publier(int villesCouvertes, int nombreDeVilles, int nombreEcoles) {
+		this.villesCouvertes = villesCouvertes;
+		this.nombreDeVilles = nombreDeVilles;
+		this.nombreEcoles = nombreEcoles;
+	}
+
+	/**
+	 * @return le nombre de villes couvertes dans la solution en cours.
+	 */
+	public int getVillesCouvertes() {
+		return villesCouvertes;
+	}
+
+	/**
+	 * @return le nombre total de villes.
+	 */
+	public int getNombreDeVilles() {
+		return nombreDeVilles;
+	}
+
+	/**
+	 * @return le nombre d'écoles placées dans la solution en cours.
+	 */
+	public int getNombreEcoles() {
+		return nombreEcoles;
+	}
+
+	/**
+	 * @return le temps écoulé depuis la création de cet objet, en millisecondes.
+	 */
+	public long getDureeEcouleeMs() {
+		return (System.nanoTime() - debut) / 1_000_000;
+	}
+
+	/**
+	 * @return l'avancement sous forme de texte à afficher à l'utilisateur.
+	 */
+	@Override
+	public String toString() {
+		return villesCouvertes + "/" + nombreDeVilles + " villes couvertes, " + nombreEcoles + " écoles, "
+				+ getDureeEcouleeMs() / 1000.0 + " s";
+	}
+}
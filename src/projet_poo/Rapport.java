@@ -0,0 +1,191 @@
+package projet_poo;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Sortie des affichages de l'agglomération ({@link Agglomeration#afficherEcoles(Rapport)},
+ * {@link Agglomeration#afficherVoisins(Rapport)}, {@link Agglomeration#debug(Rapport)}) vers
+ * l'écran ou vers un fichier. Le texte est accumulé dans un grand tampon réutilisé, qui
+ * n'est envoyé à la sortie que lorsqu'il est plein : on fait ainsi une écriture par
+ * {@link #TAILLE_TAMPON} caractères au lieu d'un appel à System.out.print() par ville.
+ *
+ * Un rapport peut aussi ne garder que les villes dont le nom commence par un préfixe donné,
+ * et s'arrêter après un nombre maximal de villes (voir {@link #accepter(String)}).
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class Rapport implements Closeable, Flushable {
+
+	/**
+	 * Nombre de caractères à partir duquel le tampon est envoyé à la sortie.
+	 */
+	public static final int TAILLE_TAMPON = 1 << 16;
+
+	/**
+	 * La sortie : System.out ou un fichier.
+	 */
+	private final Appendable sortie;
+
+	/**
+	 * Le fichier ouvert par ce rapport, ou null si la sortie est l'écran.
+	 */
+	private final Writer fichier;
+
+	/**
+	 * Le tampon dans lequel le texte est accumulé.
+	 */
+	private final StringBuilder tampon = new StringBuilder(TAILLE_TAMPON + 1024);
+
+	/**
+	 * Le nombre maximal de villes à afficher, et le préfixe des noms des villes à afficher.
+	 */
+	private int limite = Integer.MAX_VALUE;
+	private String prefixe = "";
+
+	/**
+	 * Le nombre de villes acceptées, et true si des villes ont été refusées à cause de la limite.
+	 */
+	private int villesAcceptees = 0;
+	private boolean tronque = false;
+
+	/**
+	 * Crée un rapport qui écrit sur la sortie standard.
+	 */
+	public Rapport() {
+		sortie = System.out;
+		fichier = null;
+	}
+
+	/**
+	 * Crée un rapport qui écrit dans un fichier. Crée le fichier si nécessaire, et le vide
+	 * s'il était déjà présent.
+	 *
+	 * @param cheminDuFichier : le chemin du fichier, relatif ou absolu.
+	 *
+	 * @throws IOException : lancée si le fichier ne peut pas être créé.
+	 */
+	public Rapport(String cheminDuFichier) throws IOException {
+		fichier = new FileWriter(cheminDuFichier);
+		sortie = fichier;
+	}
+
+	/**
+	 * @param limite : le nombre maximal de villes à afficher, ou 0 pour ne pas avoir de limite.
+	 */
+	public void setLimite(int limite) {
+		this.limite = limite > 0 ? limite : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param prefixe : le début du nom des villes à afficher, ou "" pour toutes les afficher.
+	 */
+	public void setPrefixe(String prefixe) {
+		this.prefixe = prefixe;
+	}
+
+	/**
+	 * Indique si une ville doit être affichée, et la compte si c'est le cas.
+	 *
+	 * @param nomVille : le nom de la ville.
+	 * @return true si le nom de la ville commence par le préfixe et que la limite n'est pas atteinte.
+	 */
+	public boolean accepter(String nomVille) {
+		if (!nomVille.startsWith(prefixe))
+			return false;
+		if (villesAcceptees == limite) {
+			tronque = true;
+			return false;
+		}
+		villesAcceptees++;
+		return true;
+	}
+
+	/**
+	 * @return true si la limite a été atteinte, c'est-à-dire si des villes n'ont pas été affichées.
+	 */
+	public boolean estTronque() {
+		return tronque;
+	}
+
+	/**
+	 * Remet à zéro le nombre de villes acceptées, pour appliquer la limite à une nouvelle
+	 * liste de villes dans le même rapport.
+	 */
+	public void nouvelleSection() {
+		villesAcceptees = 0;
+		tronque = false;
+	}
+
+	/**
+	 * Ajoute du texte au rapport.
+	 *
+	 * @param texte : le texte à ajouter.
+	 * @return ce rapport.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public Rapport ecrire(String texte) throws IOException {
+		tampon.append(texte);
+		if (tampon.length() >= TAILLE_TAMPON)
+			envoyer();
+		return this;
+	}
+
+	/**
+	 * Ajoute un caractère au rapport.
+	 *
+	 * @param caractere : le caractère à ajouter.
+	 * @return ce rapport.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public Rapport ecrire(char caractere) throws IOException {
+		tampon.append(caractere);
+		if (tampon.length() >= TAILLE_TAMPON)
+			envoyer();
+		return this;
+	}
+
+	/**
+	 * Termine la ligne en cours.
+	 *
+	 * @return ce rapport.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	public Rapport finDeLigne() throws IOException {
+		return ecrire(System.lineSeparator());
+	}
+
+	/**
+	 * Envoie le contenu du tampon à la sortie et le vide, sans le libérer.
+	 */
+	private void envoyer() throws IOException {
+		sortie.append(tampon);
+		tampon.setLength(0);
+	}
+
+	/**
+	 * Envoie tout le texte ajouté à la sortie.
+	 */
+	@Override
+	public void flush() throws IOException {
+		envoyer();
+		if (fichier != null)
+			fichier.flush();
+		else
+			System.out.flush();
+	}
+
+	/**
+	 * Envoie tout le texte ajouté à la sortie, et ferme le fichier s'il y en a un.
+	 * La sortie standard n'est pas fermée.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (fichier != null)
+			fichier.close();
+	}
+}
@@ -0,0 +1,332 @@
+package projet_poo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Mode serveur du programme : garde en mémoire des agglomérations nommées et répond aux
+ * commandes envoyées par des clients sur une socket locale (adresse de bouclage uniquement).
+ * Cela évite de payer le démarrage de la JVM et la lecture du fichier à chaque requête.
+ *
+ * Chaque client a son propre thread, qui attend ses commandes : un client inactif ne bloque
+ * donc pas les autres. Les commandes sont exécutées par un pool de threads de taille fixe,
+ * ce qui limite le nombre de résolutions en parallèle. Le protocole est textuel : une commande
+ * par ligne, dont les mots sont séparés par un ou plusieurs espaces, et une ligne de réponse
+ * commençant par "OK" ou par "ERREUR : " suivi de la raison de l'erreur. Le dernier argument
+ * d'une commande peut contenir des espaces.
+ * Commandes :
+ * - charger nom fichier : lit le fichier dans une nouvelle agglomération appelée nom ;
+ * - resoudre nom [secondes] : applique {@link Agglomeration#solutionOptimale(Progression)},
+ * avec un délai maximal éventuel ;
+ * - ajouter nom ville : ajoute une école dans la ville ;
+ * - retirer nom ville : retire l'école de la ville si la contrainte d'accessibilité le permet,
+ * sinon l'erreur donne les villes qui ne seraient plus couvertes ;
+ * - valider nom : vérifie la contrainte d'accessibilité et donne les villes non couvertes ;
+ * - ecoles nom : donne la liste des villes qui possèdent une école ;
+ * - appliquer nom fichier : applique les modifications d'un fichier delta
+ * ({@link Agglomeration#appliquerDelta(String)}) ;
+ * - sauvegarder nom fichier : sauvegarde toute l'agglomération dans le fichier ;
+ * - exporter nom fichier : écrit dans le fichier seulement les modifications faites depuis le
+ * chargement ou la dernière sauvegarde ({@link Agglomeration#sauvegardeModifications(String)}) ;
+ * - fermer nom : retire l'agglomération de la mémoire ;
+ * - liste : donne les noms des agglomérations en mémoire ;
+ * - quitter : ferme la connexion ;
+ * - arreter : arrête le serveur ({@link #arreter()}) et ferme les connexions de tous les clients.
+ *
+ * Chaque agglomération est protégée par son verrou lecture-écriture
+ * ({@link Agglomeration#getVerrou()}) : les commandes valider et ecoles s'exécutent en
+ * parallèle, les autres ont un accès exclusif (sauvegarder et exporter notent l'état sauvegardé
+ * pour les fichiers delta suivants).
+ *
+ * Le client peut être {@link Client} (arguments "--client port" du programme) ou "nc". Exemple
+ * de session, le serveur ayant été lancé avec "--serveur 4000" (les réponses commencent par OK
+ * ou ERREUR) :
+ * <pre>
+ * $ nc localhost 4000
+ * charger a villes.txt
+ * OK 5 villes
+ * resoudre a 10
+ * OK 2 écoles
+ * valider a
+ * OK valide
+ * retirer a Lyon
+ * ERREUR : la ville Vienne n'aurait plus d'école sans l'école de Lyon
+ * quitter
+ * OK
+ * </pre>
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public class Serveur {
+
+	/**
+	 * Les agglomérations en mémoire, associées à leur nom.
+	 */
+	private final ConcurrentHashMap<String, Agglomeration> agglomerations = new ConcurrentHashMap<>();
+
+	/**
+	 * La socket sur laquelle les clients se connectent.
+	 */
+	private final ServerSocket socket;
+
+	/**
+	 * Les threads des connexions, un par client connecté, qui lisent les commandes et envoient
+	 * les réponses.
+	 */
+	private final ExecutorService connexions;
+
+	/**
+	 * Le pool de threads qui exécute les commandes.
+	 */
+	private final ExecutorService executeur;
+
+	/**
+	 * Les sockets des clients connectés, fermées par {@link #arreter()} pour débloquer les
+	 * threads qui attendent leurs commandes.
+	 */
+	private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Crée un serveur écoutant sur l'adresse de bouclage et le port donnés.
+	 *
+	 * @param port : le port d'écoute, ou 0 pour en choisir un libre.
+	 * @param nombreDeThreads : le nombre de commandes exécutées en même temps. Le nombre de
+	 * clients connectés en même temps n'est pas limité.
+	 *
+	 * @throws IOException : lancée si la socket ne peut pas être créée.
+	 */
+	public Serveur(int port, int nombreDeThreads) throws IOException {
+		socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		executeur = Executors.newFixedThreadPool(nombreDeThreads);
+		connexions = Executors.newCachedThreadPool(tache -> new Thread(tache, "client-serveur"));
+	}
+
+	/**
+	 * @return le port sur lequel le serveur écoute.
+	 */
+	public int getPort() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * Accepte les connexions des clients jusqu'à l'appel de {@link #arreter()} (commande
+	 * arreter, ou arrêt du programme). Chaque client est traité dans son propre thread.
+	 */
+	public void lancer() {
+		System.out.println("Serveur en écoute sur le port " + getPort());
+		while (!socket.isClosed()) {
+			try {
+				Socket client = socket.accept();
+				connexions.execute(() -> traiterClient(client));
+			} catch (IOException e) {
+				if (!socket.isClosed())
+					System.out.println("Erreur lors de la connexion d'un client : " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Ferme la socket du serveur et celles des clients, et arrête les threads. Les
+	 * commandes en cours se terminent, mais leur réponse n'est pas envoyée. Peut être appelée
+	 * plusieurs fois.
+	 */
+	public void arreter() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			System.out.println("Erreur à la fermeture du serveur : " + e.getLocalizedMessage());
+		}
+		for (Socket client : clients) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				// La connexion est fermée de toute façon
+			}
+		}
+		connexions.shutdownNow();
+		executeur.shutdownNow();
+	}
+
+	/**
+	 * Lit les commandes d'un client jusqu'à la commande quitter ou la fin de la connexion,
+	 * et répond à chacune d'elles.
+	 *
+	 * @param client : la socket du client.
+	 */
+	private void traiterClient(Socket client) {
+		clients.add(client);
+		try (Socket s = client;
+				BufferedReader entree = new BufferedReader(
+						new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter sortie = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8),
+						true)) {
+			String ligne;
+			while ((ligne = entree.readLine()) != null) {
+				if ("quitter".equals(ligne.trim())) {
+					sortie.println("OK");
+					break;
+				}
+				if ("arreter".equals(ligne.trim())) {
+					sortie.println("OK");
+					arreter();
+					break;
+				}
+				sortie.println(executer(ligne.trim()));
+			}
+		} catch (IOException e) {
+			if (!socket.isClosed())
+				System.out.println("Erreur de communication avec un client : " + e.getLocalizedMessage());
+		} finally {
+			clients.remove(client);
+		}
+	}
+
+	/**
+	 * Fait exécuter une commande par le pool de threads et attend sa réponse.
+	 *
+	 * @param ligne : la commande reçue.
+	 * @return la ligne de réponse, commençant par "OK" ou "ERREUR".
+	 */
+	private String executer(String ligne) {
+		try {
+			return executeur.submit(() -> traiterCommande(ligne)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "ERREUR : serveur arrêté";
+		} catch (RejectedExecutionException e) {
+			return "ERREUR : serveur arrêté";
+		} catch (ExecutionException e) {
+			return "ERREUR : " + e.getCause();
+		}
+	}
+
+	/**
+	 * Exécute une commande du protocole et retourne la réponse à envoyer au client.
+	 *
+	 * @param ligne : la commande reçue.
+	 * @return la ligne de réponse, commençant par "OK" ou "ERREUR".
+	 */
+	String traiterCommande(String ligne) {
+		String[] mots = ligne.trim().split("\\s+", 3);
+		String commande = mots[0];
+
+		if ("liste".equals(commande))
+			return "OK " + String.join(" ", agglomerations.keySet());
+
+		if (mots.length < 2)
+			return "ERREUR : commande invalide : " + ligne;
+		String nom = mots[1];
+		String argument = mots.length == 3 ? mots[2] : null;
+
+		if ("charger".equals(commande)) {
+			if (argument == null)
+				return "ERREUR : il faut donner un fichier";
+			Agglomeration agglomeration = new Agglomeration();
+			try {
+				agglomeration.init(argument);
+			} catch (SyntaxeFichierInvalideException e) {
+				return "ERREUR : syntaxe du fichier : " + e.getLocalizedMessage();
+			} catch (IOException e) {
+				return "ERREUR : lecture du fichier : " + e.getLocalizedMessage();
+			}
+			agglomerations.put(nom, agglomeration);
+			return "OK " + agglomeration.getNombreDeVilles() + " villes";
+		}
+
+		if ("fermer".equals(commande))
+			return agglomerations.remove(nom) != null ? "OK" : "ERREUR : agglomération inconnue : " + nom;
+
+		Agglomeration agglomeration = agglomerations.get(nom);
+		if (agglomeration == null)
+			return "ERREUR : agglomération inconnue : " + nom;
+
+		boolean lecture = "valider".equals(commande) || "ecoles".equals(commande);
+		Lock verrou = lecture ? agglomeration.getVerrou().readLock() : agglomeration.getVerrou().writeLock();
+		verrou.lock();
+		try {
+			switch (commande) {
+
+			case "resoudre":
+				long delaiMs = 0;
+				if (argument != null) {
+					try {
+						delaiMs = Long.parseLong(argument) * 1000;
+					} catch (NumberFormatException e) {
+						return "ERREUR : délai invalide : " + argument;
+					}
+				}
+				Progression progression = new Progression(delaiMs);
+				if (!agglomeration.solutionOptimale(progression))
+					return "ERREUR : résolution annulée (" + progression + ")";
+				return "OK " + progression.getNombreEcoles() + " écoles";
+
+			case "ajouter":
+				if (argument == null)
+					return "ERREUR : il faut donner une ville";
+				return reponse(agglomeration.tenterAjoutEcole(argument));
+
+			case "retirer":
+				if (argument == null)
+					return "ERREUR : il faut donner une ville";
+				return reponse(agglomeration.tenterRetraitEcole(argument));
+
+			case "valider":
+				List<String> nonCouvertes = agglomeration.getVillesNonCouvertes();
+				return nonCouvertes.isEmpty() ? "OK valide" : "OK invalide : " + String.join(" | ", nonCouvertes);
+
+			case "ecoles":
+				return "OK " + String.join(" | ", agglomeration.getEcoles());
+
+			case "appliquer":
+				if (argument == null)
+					return "ERREUR : il faut donner un fichier";
+				try {
+					agglomeration.appliquerDelta(argument);
+				} catch (SyntaxeFichierInvalideException e) {
+					return "ERREUR : syntaxe du fichier : " + e.getLocalizedMessage();
+				} catch (IOException e) {
+					return "ERREUR : lecture du fichier : " + e.getLocalizedMessage();
+				}
+				return "OK " + agglomeration.getNombreDeVilles() + " villes";
+
+			case "sauvegarder":
+				if (argument == null)
+					return "ERREUR : il faut donner un fichier";
+				return agglomeration.sauvegardeFichier(argument) ? "OK" : "ERREUR : sauvegarde impossible";
+
+			case "exporter":
+				if (argument == null)
+					return "ERREUR : il faut donner un fichier";
+				return agglomeration.sauvegardeModifications(argument) ? "OK" : "ERREUR : sauvegarde impossible";
+
+			default:
+				return "ERREUR : commande invalide : " + ligne;
+			}
+		} finally {
+			verrou.unlock();
+		}
+	}
+
+	/**
+	 * @param erreurs : les erreurs d'une modification des écoles.
+	 * @return "OK" s'il n'y a pas d'erreur, sinon une réponse "ERREUR" qui les donne toutes.
+	 */
+	private static String reponse(List<String> erreurs) {
+		return erreurs.isEmpty() ? "OK" : "ERREUR : " + String.join(" ; ", erreurs);
+	}
+}
@@ -0,0 +1,464 @@
+package projet_poo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recherche locale qui part de la solution de {@link SolveurGlouton} et essaie de diminuer
+ * le nombre d'écoles, aussi longtemps qu'on la laisse tourner.
+ *
+ * À chaque itération, on retire une école choisie au hasard, on recouvre les villes qui ne
+ * sont plus couvertes en mettant chaque fois une école dans la ville (parmi la ville non
+ * couverte et ses voisines, sauf celle qui vient de perdre son école) qui couvre le plus de
+ * villes non couvertes, puis on retire les écoles devenues inutiles autour des écoles ajoutées.
+ * Le mouvement est gardé s'il n'augmente pas le nombre d'écoles, et annulé sinon. Pour chaque
+ * ville, on tient à jour le nombre d'écoles qui la couvrent : une itération ne coûte que le
+ * degré des villes concernées, pas la taille du graphe.
+ *
+ * La recherche s'arrête quand {@link Progression#estAnnulee()} est vrai, quand le nombre
+ * d'itérations demandé est atteint, ou quand la meilleure solution atteint la borne inférieure
+ * (nombre de villes dont les voisinages sont disjoints deux à deux, qui ont donc besoin
+ * chacune d'une école différente). Elle s'arrête aussi quand toutes les écoles restantes sont
+ * dans des villes isolées : aucune ne peut être retirée, donc plus aucun mouvement n'est
+ * possible. Elle retourne toujours la meilleure solution trouvée.
+ *
+ * Si un fichier de point de reprise est donné, l'état de la recherche y est écrit toutes les
+ * {@link #INTERVALLE_REPRISE_MS} millisecondes et à la fin (voir {@link PointDeReprise}).
+ * L'écriture se fait dans un thread à part : la recherche ne fait que copier son état. Si le
+ * fichier existe déjà et a été écrit pour le même graphe, la recherche reprend là où elle
+ * s'était arrêtée, avec le même état du générateur aléatoire.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class SolveurAmelioration {
+
+	/**
+	 * Intervalle en millisecondes entre deux écritures du point de reprise.
+	 */
+	public static final long INTERVALLE_REPRISE_MS = 30_000;
+
+	/**
+	 * Nombre d'itérations entre deux consultations de l'horloge et de la progression.
+	 */
+	private static final int ITERATIONS_ENTRE_VERIFICATIONS = 256;
+
+	/**
+	 * Le graphe à résoudre, dont les écoles ne sont pas modifiées.
+	 */
+	private final Graphe graphe;
+
+	private final int nombreDeVilles;
+
+	/**
+	 * L'empreinte de la structure du graphe et celle de l'ordre de ses villes, pour vérifier
+	 * qu'un point de reprise correspond à ce graphe.
+	 */
+	private final String empreinte;
+	private final String empreinteOrdre;
+
+	/**
+	 * Le fichier du point de reprise, ou null pour ne pas en écrire.
+	 */
+	private final File fichierReprise;
+
+	/**
+	 * La solution courante et, pour chaque ville, le nombre de villes de la solution parmi
+	 * elle et ses voisines.
+	 */
+	private BitSet ecoles;
+	private int[] couverture;
+	private int nombreEcoles;
+
+	/**
+	 * Les écoles de la solution courante qui peuvent être retirées (celles des villes qui ont
+	 * au moins une voisine), rangées dans les nombreRetirables premières cases de retirables,
+	 * et la position de chaque ville dans ce tableau (-1 si elle n'y est pas). Tirer une case
+	 * au hasard choisit une école de façon uniforme, et ajouter ou retirer une école coûte O(1).
+	 */
+	private int[] retirables;
+	private int[] positionsRetirables;
+	private int nombreRetirables;
+
+	/**
+	 * La meilleure solution trouvée et la borne inférieure.
+	 */
+	private BitSet meilleure;
+	private int borneInferieure;
+
+	/**
+	 * L'état du générateur aléatoire xorshift64*, gardé ici pour être écrit dans les points
+	 * de reprise.
+	 */
+	private long etatAleatoire = 0x9E3779B97F4A7C15L;
+
+	private long iterations = 0;
+
+	/**
+	 * Modifications de la solution courante faites par l'itération en cours, pour pouvoir
+	 * l'annuler : ville * 2 + 1 pour un ajout, ville * 2 pour un retrait.
+	 */
+	private int[] journal = new int[16];
+	private int tailleJournal;
+
+	/**
+	 * Villes à recouvrir pendant l'itération en cours.
+	 */
+	private int[] aCouvrir = new int[16];
+
+	/**
+	 * Prépare une recherche.
+	 *
+	 * @param graphe : le graphe à résoudre.
+	 * @param empreinte : l'empreinte de la structure du graphe (voir {@link Agglomeration#getEmpreinte()}).
+	 * @param fichierReprise : le fichier du point de reprise, ou null pour ne pas en écrire.
+	 */
+	public SolveurAmelioration(Graphe graphe, String empreinte, File fichierReprise) {
+		this.graphe = graphe;
+		this.nombreDeVilles = graphe.getNombreDeVilles();
+		this.empreinte = empreinte;
+		this.fichierReprise = fichierReprise;
+
+		this.empreinteOrdre = Agglomeration.getEmpreinteOrdre(graphe);
+	}
+
+	/**
+	 * Lance la recherche sur le thread courant.
+	 *
+	 * @param progression : l'objet dans lequel publier l'avancement et lire la demande d'arrêt.
+	 * @param iterationsMax : le nombre total d'itérations au-delà duquel la recherche s'arrête
+	 * (en comptant celles d'avant la reprise), par exemple Long.MAX_VALUE.
+	 *
+	 * @return la meilleure solution trouvée, ou null si la recherche a été annulée avant
+	 * d'avoir une première solution.
+	 */
+	public BitSet resoudre(Progression progression, long iterationsMax) {
+		if (!reprendre()) {
+			BitSet depart = SolveurGlouton.resoudre(graphe, progression);
+			if (depart == null)
+				return null;
+			borneInferieure = calculerBorneInferieure();
+			initialiser(depart, new int[0]);
+			retirerEcolesInutiles();
+			meilleure = (BitSet) ecoles.clone();
+		}
+
+		long debutRecherche = System.nanoTime();
+		long iterationsAuDepart = iterations;
+		ExecutorService ecrivain = null;
+		AtomicReference<PointDeReprise> enAttente = new AtomicReference<PointDeReprise>();
+		if (fichierReprise != null) {
+			ecrivain = Executors.newSingleThreadExecutor(tache -> {
+				Thread thread = new Thread(tache, "point-de-reprise");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		long prochaineReprise = System.nanoTime() + INTERVALLE_REPRISE_MS * 1_000_000;
+		int meilleurNombre = meilleure.cardinality();
+		while (meilleurNombre > borneInferieure && iterations < iterationsMax && nombreRetirables > 0) {
+			if (iterations % ITERATIONS_ENTRE_VERIFICATIONS == 0) {
+				progression.publier(nombreDeVilles, nombreDeVilles, meilleurNombre);
+				if (progression.estAnnulee())
+					break;
+				if (ecrivain != null && System.nanoTime() - prochaineReprise >= 0) {
+					// Seul le dernier état en attente est écrit si l'écriture prend du retard
+					if (enAttente.getAndSet(capturer()) == null)
+						ecrivain.execute(() -> ecrire(enAttente.getAndSet(null)));
+					prochaineReprise = System.nanoTime() + INTERVALLE_REPRISE_MS * 1_000_000;
+				}
+			}
+
+			iterations++;
+			if (iterer() && nombreEcoles < meilleurNombre) {
+				meilleure = (BitSet) ecoles.clone();
+				meilleurNombre = nombreEcoles;
+			}
+		}
+		progression.publier(nombreDeVilles, nombreDeVilles, meilleurNombre);
+
+		if (ecrivain != null) {
+			ecrivain.shutdown();
+			try {
+				ecrivain.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			ecrire(capturer());
+		}
+		Metriques.getInstance().ajouterAmelioration(iterations - iterationsAuDepart,
+				System.nanoTime() - debutRecherche);
+		return (BitSet) meilleure.clone();
+	}
+
+	/**
+	 * Reprend l'état de la recherche depuis le fichier de point de reprise, s'il existe et
+	 * a été écrit pour ce graphe.
+	 *
+	 * @return true si la recherche a été reprise, false si elle doit commencer.
+	 */
+	private boolean reprendre() {
+		if (fichierReprise == null || !fichierReprise.isFile())
+			return false;
+
+		PointDeReprise point;
+		try {
+			point = PointDeReprise.lire(fichierReprise);
+		} catch (IOException e) {
+			System.out.println("Point de reprise ignoré : " + e.getLocalizedMessage());
+			return false;
+		}
+		if (!point.correspondA(empreinte, empreinteOrdre, nombreDeVilles)) {
+			System.out.println("Point de reprise ignoré : il a été écrit pour un autre graphe");
+			return false;
+		}
+
+		iterations = point.getIterations();
+		etatAleatoire = point.getEtatAleatoire();
+		borneInferieure = point.getBorneInferieure();
+		meilleure = point.getMeilleure();
+		initialiser(point.getCourante(), point.getRetirables());
+		System.out.println("Reprise après " + iterations + " itérations (meilleure solution : "
+				+ point.getBorneSuperieure() + " écoles, borne inférieure : " + borneInferieure + ")");
+		return true;
+	}
+
+	/**
+	 * @return une copie de l'état de la recherche.
+	 */
+	private PointDeReprise capturer() {
+		return new PointDeReprise(empreinte, empreinteOrdre, nombreDeVilles, iterations, etatAleatoire,
+				borneInferieure, (BitSet) meilleure.clone(), (BitSet) ecoles.clone(),
+				Arrays.copyOf(retirables, nombreRetirables));
+	}
+
+	/**
+	 * Écrit un point de reprise dans le fichier, en affichant l'erreur éventuelle.
+	 */
+	private void ecrire(PointDeReprise point) {
+		try {
+			point.ecrire(fichierReprise);
+		} catch (IOException e) {
+			System.out.println("Erreur lors de l'écriture du point de reprise : " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Fait de la solution donnée la solution courante et calcule la couverture de chaque ville.
+	 * Les écoles de l'ordre donné sont placées en premier, pour qu'une recherche reprise tire
+	 * les écoles au hasard exactement comme la recherche interrompue.
+	 *
+	 * @param solution : la solution.
+	 * @param ordre : des villes de la solution, dans l'ordre où les placer.
+	 */
+	private void initialiser(BitSet solution, int[] ordre) {
+		ecoles = new BitSet(nombreDeVilles);
+		couverture = new int[nombreDeVilles];
+		nombreEcoles = 0;
+		retirables = new int[nombreDeVilles];
+		positionsRetirables = new int[nombreDeVilles];
+		Arrays.fill(positionsRetirables, -1);
+		nombreRetirables = 0;
+		for (int ville : ordre)
+			if (ville >= 0 && ville < nombreDeVilles && solution.get(ville) && !ecoles.get(ville))
+				mettreEcole(ville);
+		for (int ville = solution.nextSetBit(0); ville >= 0; ville = solution.nextSetBit(ville + 1))
+			if (!ecoles.get(ville))
+				mettreEcole(ville);
+	}
+
+	/**
+	 * Une itération de la recherche, décrite dans la documentation de la classe.
+	 *
+	 * @return true si le mouvement a été gardé, false s'il a été annulé.
+	 */
+	private boolean iterer() {
+		if (nombreRetirables == 0)
+			return false;
+		int retiree = retirables[aleatoire(nombreRetirables)];
+
+		int nombreAvant = nombreEcoles;
+		tailleJournal = 0;
+		enleverEcole(retiree);
+		noter(retiree, false);
+
+		// Villes qui ne sont plus couvertes
+		int nombreACouvrir = 0;
+		int degre = graphe.getDegre(retiree);
+		for (int k = -1; k < degre; k++) {
+			int ville = k < 0 ? retiree : graphe.getVoisin(retiree, k);
+			if (couverture[ville] == 0) {
+				if (nombreACouvrir == aCouvrir.length)
+					aCouvrir = Arrays.copyOf(aCouvrir, 2 * nombreACouvrir);
+				aCouvrir[nombreACouvrir++] = ville;
+			}
+		}
+
+		int debutAjouts = tailleJournal;
+		for (int i = 0; i < nombreACouvrir; i++) {
+			int ville = aCouvrir[i];
+			if (couverture[ville] > 0)
+				continue;
+			int choisie = -1, max = -1, egalites = 0;
+			int degreVille = graphe.getDegre(ville);
+			for (int k = -1; k < degreVille; k++) {
+				int candidate = k < 0 ? ville : graphe.getVoisin(ville, k);
+				if (candidate == retiree)
+					continue;
+				int score = villesNonCouvertes(candidate);
+				if (score > max) {
+					max = score;
+					choisie = candidate;
+					egalites = 1;
+				} else if (score == max && aleatoire(++egalites) == 0) {
+					choisie = candidate; // Choix uniforme parmi les égalités
+				}
+			}
+			mettreEcole(choisie);
+			noter(choisie, true);
+		}
+
+		// Écoles devenues inutiles autour des écoles ajoutées
+		int finAjouts = tailleJournal;
+		for (int j = debutAjouts; j < finAjouts; j++) {
+			int ajoutee = journal[j] >>> 1;
+			int degreAjoutee = graphe.getDegre(ajoutee);
+			for (int k = -1; k < degreAjoutee; k++) {
+				int ville = k < 0 ? ajoutee : graphe.getVoisin(ajoutee, k);
+				int degreVille = graphe.getDegre(ville);
+				for (int l = -1; l < degreVille; l++) {
+					int ecole = l < 0 ? ville : graphe.getVoisin(ville, l);
+					if (ecole != ajoutee && ecoles.get(ecole) && estInutile(ecole)) {
+						enleverEcole(ecole);
+						noter(ecole, false);
+					}
+				}
+			}
+		}
+
+		if (nombreEcoles <= nombreAvant)
+			return true;
+		for (int j = tailleJournal - 1; j >= 0; j--) { // Annulation dans l'ordre inverse
+			int ville = journal[j] >>> 1;
+			if ((journal[j] & 1) == 1)
+				enleverEcole(ville);
+			else
+				mettreEcole(ville);
+		}
+		return false;
+	}
+
+	/**
+	 * Retire de la solution courante toutes les écoles inutiles, en O(V+E).
+	 */
+	private void retirerEcolesInutiles() {
+		for (int ville = ecoles.nextSetBit(0); ville >= 0; ville = ecoles.nextSetBit(ville + 1))
+			if (estInutile(ville))
+				enleverEcole(ville);
+	}
+
+	/**
+	 * @return true si chaque ville couverte par l'école de la ville donnée est aussi couverte
+	 * par une autre école.
+	 */
+	private boolean estInutile(int ecole) {
+		if (couverture[ecole] < 2)
+			return false;
+		int degre = graphe.getDegre(ecole);
+		for (int k = 0; k < degre; k++)
+			if (couverture[graphe.getVoisin(ecole, k)] < 2)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return le nombre de villes non couvertes parmi la ville donnée et ses voisines.
+	 */
+	private int villesNonCouvertes(int ville) {
+		int nombre = couverture[ville] == 0 ? 1 : 0;
+		int degre = graphe.getDegre(ville);
+		for (int k = 0; k < degre; k++)
+			if (couverture[graphe.getVoisin(ville, k)] == 0)
+				nombre++;
+		return nombre;
+	}
+
+	private void mettreEcole(int ville) {
+		ecoles.set(ville);
+		nombreEcoles++;
+		modifierCouverture(ville, 1);
+		if (graphe.getDegre(ville) > 0) { // Une ville isolée doit garder son école
+			retirables[nombreRetirables] = ville;
+			positionsRetirables[ville] = nombreRetirables++;
+		}
+	}
+
+	private void enleverEcole(int ville) {
+		ecoles.clear(ville);
+		nombreEcoles--;
+		modifierCouverture(ville, -1);
+		int position = positionsRetirables[ville];
+		if (position >= 0) { // La dernière école du tableau prend la place de celle-ci
+			int derniere = retirables[--nombreRetirables];
+			retirables[position] = derniere;
+			positionsRetirables[derniere] = position;
+			positionsRetirables[ville] = -1;
+		}
+	}
+
+	private void modifierCouverture(int ville, int difference) {
+		couverture[ville] += difference;
+		int degre = graphe.getDegre(ville);
+		for (int k = 0; k < degre; k++)
+			couverture[graphe.getVoisin(ville, k)] += difference;
+	}
+
+	private void noter(int ville, boolean ajout) {
+		if (tailleJournal == journal.length)
+			journal = Arrays.copyOf(journal, 2 * tailleJournal);
+		journal[tailleJournal++] = ville * 2 + (ajout ? 1 : 0);
+	}
+
+	/**
+	 * Calcule la borne inférieure : on choisit des villes dont les voisinages (la ville et ses
+	 * voisines) sont disjoints deux à deux. Aucune école ne peut couvrir deux de ces villes.
+	 *
+	 * @return le nombre de villes choisies.
+	 */
+	private int calculerBorneInferieure() {
+		BitSet prises = new BitSet(nombreDeVilles);
+		int borne = 0;
+		for (int ville = 0; ville < nombreDeVilles; ville++) {
+			boolean libre = !prises.get(ville);
+			int degre = graphe.getDegre(ville);
+			for (int k = 0; k < degre && libre; k++)
+				libre = !prises.get(graphe.getVoisin(ville, k));
+			if (libre) {
+				borne++;
+				prises.set(ville);
+				for (int k = 0; k < degre; k++)
+					prises.set(graphe.getVoisin(ville, k));
+			}
+		}
+		return borne;
+	}
+
+	/**
+	 * Générateur xorshift64*.
+	 *
+	 * @param borne : la borne supérieure exclue, strictement positive.
+	 * @return un entier pseudo-aléatoire entre 0 et borne - 1.
+	 */
+	private int aleatoire(int borne) {
+		etatAleatoire ^= etatAleatoire >>> 12;
+		etatAleatoire ^= etatAleatoire << 25;
+		etatAleatoire ^= etatAleatoire >>> 27;
+		return (int) (((etatAleatoire * 0x2545F4914F6CDD1DL) >>> 33) % borne);
+	}
+}
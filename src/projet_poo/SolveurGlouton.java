@@ -0,0 +1,210 @@
+package projet_poo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * L'algorithme glouton utilisé par {@link Agglomeration#solutionOptimale(Progression)}, écrit
+ * sur l'interface {@link Graphe} pour pouvoir résoudre aussi un {@link GrapheMappe}.
+ *
+ * On part d'une configuration sans aucune école. On met une école dans toutes les villes de
+ * degré 0. Ensuite, tant que toutes les villes ne remplissent pas la contrainte d'accessibilité,
+ * on trouve parmi les villes de plus grand degré ne possédant pas d'école celle pour laquelle
+ * lui ajouter une école va faire respecter la contrainte d'accessibilité au plus grand nombre
+ * de villes voisines.
+ *
+ * L'état de l'algorithme tient dans deux BitSet (villes couvertes et villes colorées, c'est-à-dire
+ * possédant une école), soit deux bits par ville : les degrés sont relus dans le graphe.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class SolveurGlouton {
+
+	/**
+	 * Classe utilitaire : ne peut pas être instanciée.
+	 */
+	private SolveurGlouton() {
+	}
+
+	/**
+	 * Calcule une solution sans modifier les écoles du graphe. Publie l'avancement dans
+	 * l'argument progression et s'arrête dès que {@link Progression#estAnnulee()} est vrai.
+	 *
+	 * @param graphe : le graphe à résoudre.
+	 * @param progression : l'objet dans lequel publier l'avancement et lire la demande d'arrêt.
+	 *
+	 * @return l'ensemble des indices des villes qui doivent posséder une école, ou null si
+	 * l'algorithme a été annulé.
+	 */
+	public static BitSet resoudre(Graphe graphe, Progression progression) {
+		long debutResolution = System.nanoTime();
+		long iterations = 0, candidatesEvaluees = 0;
+		int ecolesPlacees = 0, villesCouvertes = 0;
+		int nombreDeVilles = graphe.getNombreDeVilles();
+
+		// true si la ville est voisine d'une ville qui possède une école, ou en possède une
+		BitSet couvertes = new BitSet(nombreDeVilles);
+		// true si la ville possède une école
+		BitSet colorees = new BitSet(nombreDeVilles);
+
+		// Numéros des villes candidates pour avoir une école
+		int[] candidates = new int[16];
+		int nombreCandidates;
+
+		// Les villes sans voisin doivent posséder une école
+		for (int i = 0; i < nombreDeVilles; i++) {
+			if (graphe.getDegre(i) == 0) {
+				colorees.set(i);
+				couvertes.set(i);
+				ecolesPlacees++;
+				villesCouvertes++;
+			}
+		}
+
+		// Signal d'arrêt de la boucle
+		boolean stop = villesCouvertes == nombreDeVilles;
+
+		// Partie concrète de l'algorithme
+		while (!stop) {
+			progression.publier(villesCouvertes, nombreDeVilles, ecolesPlacees);
+			if (progression.estAnnulee()) {
+				Metriques.getInstance().ajouterResolution(iterations, candidatesEvaluees, ecolesPlacees,
+						System.nanoTime() - debutResolution);
+				return null;
+			}
+			iterations++;
+
+			// Le numéro de la ville dans laquelle on va construire une école (la colorer),
+			// initialement la première ville non colorée
+			int toColor = colorees.nextClearBit(0);
+			int degreMax = graphe.getDegre(toColor);
+			candidates[0] = toColor;
+			nombreCandidates = 1;
+			// Parcourir les villes non colorées pour trouver celles avec le plus de villes
+			// voisines (plus grand degré)
+			for (int i = colorees.nextClearBit(toColor + 1); i < nombreDeVilles; i = colorees.nextClearBit(i + 1)) {
+				int degre = graphe.getDegre(i);
+				// 2 valeurs max donc apparition d'une autre candidate
+				if (degre == degreMax) {
+					if (nombreCandidates == candidates.length)
+						candidates = Arrays.copyOf(candidates, 2 * nombreCandidates);
+					candidates[nombreCandidates++] = i;
+				}
+
+				// Si le max change, la liste est réinitialisée
+				if (degre > degreMax) {
+					degreMax = degre;
+					candidates[0] = i;
+					nombreCandidates = 1;
+				}
+			}
+
+			// Choisir la candidate qui pourrait couvrir le plus de villes non couvertes
+			// À cause des points négatifs, il serait logique de mettre une marge (pire des
+			// cas : lié a n villes colorées)
+			int max = (-1) * nombreDeVilles;
+			toColor = candidates[0];
+			candidatesEvaluees += nombreCandidates;
+			for (int i = 0; i < nombreCandidates; i++) {
+				int score = 0;
+				for (int k = 0; k < degreMax; k++) {
+					int voisin = graphe.getVoisin(candidates[i], k);
+					if (!couvertes.get(voisin))
+						score++;
+					if (colorees.get(voisin))
+						score--; // Être relié à une ville colorée donne moins de crédibilité
+				}
+				if (score > max) {
+					max = score;
+					toColor = candidates[i];
+				}
+			}
+
+			// Construire une école dans cette ville
+			ecolesPlacees++;
+			colorees.set(toColor);
+			if (!couvertes.get(toColor)) {
+				couvertes.set(toColor);
+				villesCouvertes++;
+			}
+
+			// Marquer les villes voisines de la ville colorée comme couvertes
+			for (int k = 0; k < degreMax; k++) {
+				int voisin = graphe.getVoisin(toColor, k);
+				if (!couvertes.get(voisin)) {
+					couvertes.set(voisin);
+					villesCouvertes++;
+				}
+			}
+			// Si les villes sont toutes couvertes, retourner le résultat
+			stop = villesCouvertes == nombreDeVilles;
+		}
+
+		progression.publier(villesCouvertes, nombreDeVilles, ecolesPlacees);
+		Metriques.getInstance().ajouterResolution(iterations, candidatesEvaluees, ecolesPlacees,
+				System.nanoTime() - debutResolution);
+		return colorees;
+	}
+
+	/**
+	 * Remplace les écoles du graphe par celles de la solution donnée.
+	 *
+	 * @param graphe : le graphe à modifier.
+	 * @param ecoles : l'ensemble des indices des villes qui doivent posséder une école.
+	 */
+	public static void appliquer(Graphe graphe, BitSet ecoles) {
+		int nombreDeVilles = graphe.getNombreDeVilles();
+		for (int i = 0; i < nombreDeVilles; i++)
+			graphe.setEcole(i, ecoles.get(i));
+	}
+
+	/**
+	 * Répare une configuration d'écoles invalide en ne touchant qu'aux villes non couvertes
+	 * (données par {@link Validation#villesNonCouvertes(Graphe)}) : tant qu'il en reste, on
+	 * prend la première ville non couverte et on met une école dans la ville, parmi elle et
+	 * ses voisines, qui couvre le plus de villes encore non couvertes. Les écoles existantes
+	 * sont gardées.
+	 *
+	 * @param graphe : le graphe à modifier.
+	 * @param nonCouvertes : l'ensemble des indices des villes non couvertes, vidé par la méthode.
+	 *
+	 * @return le nombre d'écoles ajoutées.
+	 */
+	public static int completer(Graphe graphe, BitSet nonCouvertes) {
+		int ajoutees = 0;
+		for (int ville = nonCouvertes.nextSetBit(0); ville >= 0; ville = nonCouvertes.nextSetBit(ville + 1)) {
+			// La ville elle-même puis ses voisines, en gardant la première de meilleur score
+			int toColor = ville;
+			int max = score(graphe, ville, nonCouvertes);
+			int degre = graphe.getDegre(ville);
+			for (int k = 0; k < degre; k++) {
+				int voisin = graphe.getVoisin(ville, k);
+				int score = score(graphe, voisin, nonCouvertes);
+				if (score > max) {
+					max = score;
+					toColor = voisin;
+				}
+			}
+
+			graphe.setEcole(toColor, true);
+			ajoutees++;
+			nonCouvertes.clear(toColor);
+			degre = graphe.getDegre(toColor);
+			for (int k = 0; k < degre; k++)
+				nonCouvertes.clear(graphe.getVoisin(toColor, k));
+		}
+		return ajoutees;
+	}
+
+	/**
+	 * @return le nombre de villes non couvertes parmi la ville donnée et ses voisines.
+	 */
+	private static int score(Graphe graphe, int ville, BitSet nonCouvertes) {
+		int score = nonCouvertes.get(ville) ? 1 : 0;
+		int degre = graphe.getDegre(ville);
+		for (int k = 0; k < degre; k++)
+			if (nonCouvertes.get(graphe.getVoisin(ville, k)))
+				score++;
+		return score;
+	}
+}
@@ -0,0 +1,114 @@
+package projet_poo;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Vérification de la contrainte d'accessibilité sur un {@link Graphe} : chaque ville doit
+ * posséder une école ou être voisine d'une ville qui possède une école. Chaque route est
+ * lue au plus deux fois, la vérification est donc en O(V+E).
+ *
+ * {@link #villesNonCouvertes(Graphe)} vérifie toutes les villes en parallèle (fork-join sur
+ * des intervalles d'indices) et donne l'ensemble complet des villes non couvertes.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+public final class Validation {
+
+	/**
+	 * Nombre de villes en dessous duquel un intervalle est vérifié sans être redécoupé
+	 * (multiple de 64 pour que chaque tâche écrive ses propres mots de l'ensemble résultat).
+	 */
+	private static final int TAILLE_INTERVALLE = 1 << 14;
+
+	/**
+	 * Vérifie les villes d'un intervalle d'indices, en le coupant en deux tâches tant qu'il
+	 * est plus grand que {@link #TAILLE_INTERVALLE}. Les villes non couvertes sont marquées
+	 * dans un tableau de mots partagé, un bit par ville : les intervalles commencent sur un
+	 * multiple de 64, deux tâches n'écrivent donc jamais dans le même mot.
+	 */
+	private static final class Verification extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Graphe graphe;
+		private final long[] mots;
+		private final int debut, fin;
+
+		Verification(Graphe graphe, long[] mots, int debut, int fin) {
+			this.graphe = graphe;
+			this.mots = mots;
+			this.debut = debut;
+			this.fin = fin;
+		}
+
+		@Override
+		protected void compute() {
+			if (fin - debut <= TAILLE_INTERVALLE) {
+				for (int i = debut; i < fin; i++)
+					if (!estCouverte(graphe, i))
+						mots[i >>> 6] |= 1L << i;
+			} else {
+				int milieu = debut + ((fin - debut) / 2 & ~63);
+				invokeAll(new Verification(graphe, mots, debut, milieu),
+						new Verification(graphe, mots, milieu, fin));
+			}
+		}
+	}
+
+	/**
+	 * Classe utilitaire : ne peut pas être instanciée.
+	 */
+	private Validation() {
+	}
+
+	/**
+	 * @param graphe : le graphe.
+	 * @param ville : l'indice de la ville.
+	 * @return true si la ville possède une école ou est voisine d'une ville qui en possède une.
+	 */
+	public static boolean estCouverte(Graphe graphe, int ville) {
+		if (graphe.possedeEcole(ville))
+			return true;
+		int degre = graphe.getDegre(ville);
+		for (int k = 0; k < degre; k++)
+			if (graphe.possedeEcole(graphe.getVoisin(ville, k)))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Vérifie la contrainte d'accessibilité et enregistre sa durée dans les {@link Metriques}.
+	 *
+	 * @param graphe : le graphe à vérifier.
+	 * @return true si toutes les villes respectent la contrainte, false sinon.
+	 */
+	public static boolean respecteAccessibilite(Graphe graphe) {
+		long debutValidation = System.nanoTime();
+		boolean valide = true;
+		int nombreDeVilles = graphe.getNombreDeVilles();
+		for (int i = 0; i < nombreDeVilles && valide; i++)
+			if (!estCouverte(graphe, i))
+				valide = false;
+		Metriques.getInstance().ajouterValidation(System.nanoTime() - debutValidation);
+		return valide;
+	}
+
+	/**
+	 * Vérifie la contrainte d'accessibilité pour toutes les villes, en parallèle sur le
+	 * ForkJoinPool commun, et enregistre sa durée dans les {@link Metriques}. Le graphe ne
+	 * doit pas être modifié pendant la vérification.
+	 *
+	 * @param graphe : le graphe à vérifier.
+	 * @return l'ensemble des indices des villes qui ne respectent pas la contrainte (vide si
+	 * la configuration des écoles est valide).
+	 */
+	public static BitSet villesNonCouvertes(Graphe graphe) {
+		long debutValidation = System.nanoTime();
+		int nombreDeVilles = graphe.getNombreDeVilles();
+		long[] mots = new long[(nombreDeVilles + 63) / 64];
+		ForkJoinPool.commonPool().invoke(new Verification(graphe, mots, 0, nombreDeVilles));
+		Metriques.getInstance().ajouterValidation(System.nanoTime() - debutValidation);
+		return BitSet.valueOf(mots);
+	}
+}
@@ -0,0 +1,154 @@
+package projet_poo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Outils communs aux programmes de vérification de ce répertoire (VerificationCache,
+ * VerificationGrapheMappe, VerificationChargement, VerificationDelta). Chacun de ces programmes
+ * a une méthode main, affiche les vérifications qui échouent et un bilan, et se termine avec
+ * le code 1 si une vérification a échoué, 0 sinon. Ils sont dans le paquetage projet_poo pour
+ * pouvoir appeler les méthodes de paquetage des classes vérifiées.
+ *
+ * Compilation et lancement depuis la racine du projet, par exemple :
+ * javac -encoding UTF-8 -d bin src/projet_poo/*.java test/projet_poo/*.java
+ * java -cp bin projet_poo.VerificationCache
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class Verification {
+
+	/**
+	 * Le nom du programme de vérification, affiché dans le bilan.
+	 */
+	private final String nom;
+
+	/**
+	 * Le nombre de vérifications effectuées et le nombre de vérifications qui ont échoué.
+	 */
+	private int verifications = 0;
+	private int echecs = 0;
+
+	/**
+	 * @param nom : le nom du programme de vérification.
+	 */
+	Verification(String nom) {
+		this.nom = nom;
+	}
+
+	/**
+	 * Compte une vérification, et affiche sa description si elle échoue.
+	 *
+	 * @param condition : true si la vérification a réussi.
+	 * @param description : ce qui est vérifié.
+	 */
+	void verifier(boolean condition, String description) {
+		verifications++;
+		if (!condition) {
+			echecs++;
+			System.out.println("ÉCHEC : " + description);
+		}
+	}
+
+	/**
+	 * Affiche le bilan et termine le programme, avec le code 1 si une vérification a échoué.
+	 */
+	void terminer() {
+		System.out.println(nom + " : " + (verifications - echecs) + "/" + verifications + " vérifications réussies");
+		System.exit(echecs == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Crée les lignes d'un fichier d'agglomération valide au hasard : des villes, des routes
+	 * entre des villes différentes sans doublon, et des écoles dans certaines villes.
+	 *
+	 * @param aleatoire : le générateur aléatoire.
+	 * @param nombreDeVilles : le nombre de villes, au moins 2.
+	 * @return les lignes du fichier.
+	 */
+	static List<String> agglomerationAleatoire(Random aleatoire, int nombreDeVilles) {
+		List<String> lignes = new ArrayList<String>();
+		for (int i = 0; i < nombreDeVilles; i++)
+			lignes.add("ville(v" + i + ")");
+		HashSet<Long> routes = new HashSet<Long>();
+		int nombreDeRoutes = aleatoire.nextInt(3 * nombreDeVilles);
+		for (int i = 0; i < nombreDeRoutes; i++) {
+			int ville1 = aleatoire.nextInt(nombreDeVilles), ville2 = aleatoire.nextInt(nombreDeVilles);
+			if (ville1 != ville2 && routes.add((long) Math.min(ville1, ville2) << 32 | Math.max(ville1, ville2)))
+				lignes.add("route(v" + ville1 + ",v" + ville2 + ")");
+		}
+		for (int i = 0; i < nombreDeVilles; i++)
+			if (aleatoire.nextInt(3) == 0)
+				lignes.add("ecole(v" + i + ")");
+		return lignes;
+	}
+
+	/**
+	 * Écrit des lignes dans un fichier temporaire, supprimé à la fin du programme.
+	 *
+	 * @param suffixe : la fin du nom du fichier, par exemple ".txt".
+	 * @param lignes : les lignes à écrire.
+	 * @return le fichier.
+	 * @throws IOException : lancée pour toute erreur d'écriture.
+	 */
+	static File fichierTemporaire(String suffixe, List<String> lignes) throws IOException {
+		File fichier = File.createTempFile("verification", suffixe);
+		fichier.deleteOnExit();
+		try (PrintWriter pw = new PrintWriter(fichier)) {
+			for (String ligne : lignes)
+				pw.print(ligne + "\n");
+		}
+		return fichier;
+	}
+
+	/**
+	 * Décrit un graphe indépendamment de l'ordre de ses villes et de ses routes : pour chaque
+	 * nom de ville, triés, une étoile si elle possède une école et les noms triés de ses voisines.
+	 *
+	 * @param graphe : le graphe.
+	 * @return la description du graphe.
+	 */
+	static String decrire(Graphe graphe) {
+		TreeMap<String, String> villes = new TreeMap<String, String>();
+		for (int i = 0; i < graphe.getNombreDeVilles(); i++) {
+			TreeSet<String> voisines = new TreeSet<String>();
+			for (int k = 0; k < graphe.getDegre(i); k++)
+				voisines.add(graphe.getNomVille(graphe.getVoisin(i, k)));
+			villes.put(graphe.getNomVille(i), (graphe.possedeEcole(i) ? "*" : "") + voisines);
+		}
+		return villes.toString();
+	}
+
+	/**
+	 * Une action à lancer sans afficher ce qu'elle écrit, qui peut lever une exception.
+	 */
+	interface Action {
+		void lancer() throws Exception;
+	}
+
+	/**
+	 * Lance une action en jetant ce qu'elle écrit sur la sortie standard (messages d'erreur
+	 * attendus, écoles ajoutées au chargement...).
+	 *
+	 * @param action : l'action à lancer.
+	 * @throws Exception : l'exception levée par l'action.
+	 */
+	static void sansAffichage(Action action) throws Exception {
+		PrintStream sortie = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			action.lancer();
+		} finally {
+			System.setOut(sortie);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package projet_poo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Vérifie la recherche de {@link SolveurAmelioration} et ses points de reprise
+ * ({@link PointDeReprise}) sur des agglomérations tirées au hasard :
+ * - une recherche arrêtée puis reprise depuis son point de reprise donne la même solution et le
+ * même point de reprise final qu'une recherche faite d'une traite ;
+ * - un point de reprise écrit pour un autre graphe, ou pour le même graphe avec les villes dans
+ * un autre ordre, est ignoré et la recherche repart de zéro ;
+ * - la solution couvre toutes les villes et n'a jamais moins d'écoles que la borne inférieure.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationAmelioration {
+
+	/**
+	 * Message affiché par la recherche quand elle ignore un point de reprise.
+	 */
+	private static final String IGNORE = "Point de reprise ignoré : il a été écrit pour un autre graphe";
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationAmelioration");
+		Random aleatoire = new Random(34);
+
+		for (int essai = 0; essai < 200; essai++) {
+			int nombreDeVilles = 2 + aleatoire.nextInt(150);
+			List<String> lignes = Verification.agglomerationAleatoire(aleatoire, nombreDeVilles);
+			Agglomeration agglomeration = charger(lignes);
+			long iterations = 1 + aleatoire.nextInt(20_000);
+			String cas = nombreDeVilles + " villes, " + iterations + " + " + iterations + " itérations";
+
+			// D'une traite
+			File dUneTraite = fichierReprise();
+			BitSet complete = lancer(agglomeration, dUneTraite, 2 * iterations);
+			PointDeReprise pointComplet = PointDeReprise.lire(dUneTraite);
+			verification.verifier(couvre(agglomeration, complete), "la solution couvre toutes les villes (" + cas + ")");
+			verification.verifier(complete.cardinality() >= pointComplet.getBorneInferieure(),
+					"la solution a au moins " + pointComplet.getBorneInferieure() + " écoles (" + cas + ")");
+
+			// Arrêtée puis reprise
+			File reprise = fichierReprise();
+			BitSet[] reprisee = new BitSet[1];
+			capturer(() -> lancer(agglomeration, reprise, iterations));
+			String sortie = capturer(() -> reprisee[0] = lancer(agglomeration, reprise, 2 * iterations));
+			verification.verifier(sortie.contains("Reprise après"), "la recherche est reprise (" + cas + ")");
+			verification.verifier(complete.equals(reprisee[0]), "la reprise donne la même solution (" + cas + ")");
+			PointDeReprise pointRepris = PointDeReprise.lire(reprise);
+			verification.verifier(pointComplet.getIterations() == pointRepris.getIterations()
+					&& pointComplet.getBorneSuperieure() == pointRepris.getBorneSuperieure()
+					&& pointComplet.getCourante().equals(pointRepris.getCourante()),
+					"la reprise donne le même point de reprise final (" + cas + ")");
+
+			// Point de reprise d'un autre graphe
+			Agglomeration autre = charger(Verification.agglomerationAleatoire(aleatoire, nombreDeVilles));
+			if (!autre.getEmpreinte().equals(agglomeration.getEmpreinte()))
+				verifierIgnore(verification, autre, reprise, iterations, "autre graphe, " + cas);
+
+			// Point de reprise du même graphe, villes dans un autre ordre
+			List<String> villes = new ArrayList<String>(lignes.subList(0, nombreDeVilles));
+			Collections.shuffle(villes, aleatoire);
+			List<String> melangees = new ArrayList<String>(villes);
+			melangees.addAll(lignes.subList(nombreDeVilles, lignes.size()));
+			Agglomeration reordonnee = charger(melangees);
+			verification.verifier(reordonnee.getEmpreinte().equals(agglomeration.getEmpreinte()),
+					"l'empreinte ne dépend pas de l'ordre des villes (" + cas + ")");
+			if (!Agglomeration.getEmpreinteOrdre(reordonnee).equals(Agglomeration.getEmpreinteOrdre(agglomeration)))
+				verifierIgnore(verification, reordonnee, reprise, iterations, "autre ordre, " + cas);
+
+			for (File fichier : List.of(dUneTraite, reprise, new File(dUneTraite + ".tmp"), new File(reprise + ".tmp")))
+				fichier.delete();
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Vérifie qu'une recherche sur le graphe donné ignore le point de reprise du fichier et
+	 * trouve la même solution qu'une recherche sans point de reprise.
+	 */
+	private static void verifierIgnore(Verification verification, Agglomeration agglomeration, File reprise,
+			long iterations, String cas) throws Exception {
+		File copie = fichierReprise();
+		Files.copy(reprise.toPath(), copie.toPath());
+		BitSet[] solution = new BitSet[1];
+		String sortie = capturer(() -> solution[0] = lancer(agglomeration, copie, iterations));
+		verification.verifier(sortie.contains(IGNORE), "le point de reprise est ignoré (" + cas + ")");
+		BitSet sansReprise = lancer(agglomeration, null, iterations);
+		verification.verifier(sansReprise.equals(solution[0]), "la recherche repart de zéro (" + cas + ")");
+		verification.verifier(couvre(agglomeration, solution[0]), "la solution couvre toutes les villes (" + cas + ")");
+		copie.delete();
+		new File(copie + ".tmp").delete();
+	}
+
+	/**
+	 * Lance une recherche sur une agglomération.
+	 *
+	 * @param reprise : le fichier du point de reprise, ou null.
+	 * @return la solution trouvée.
+	 */
+	private static BitSet lancer(Agglomeration agglomeration, File reprise, long iterationsMax) {
+		return new SolveurAmelioration(agglomeration, agglomeration.getEmpreinte(), reprise)
+				.resoudre(new Progression(), iterationsMax);
+	}
+
+	/**
+	 * @return une agglomération lue depuis les lignes données.
+	 */
+	private static Agglomeration charger(List<String> lignes) throws Exception {
+		Agglomeration agglomeration = new Agglomeration();
+		File fichier = Verification.fichierTemporaire(".txt", lignes);
+		Verification.sansAffichage(() -> agglomeration.init(fichier.getPath()));
+		fichier.delete();
+		return agglomeration;
+	}
+
+	/**
+	 * @return un fichier de point de reprise qui n'existe pas encore.
+	 */
+	private static File fichierReprise() throws Exception {
+		File fichier = Verification.fichierTemporaire(".reprise", List.of());
+		fichier.delete();
+		return fichier;
+	}
+
+	/**
+	 * @return true si chaque ville est dans la solution ou voisine d'une ville de la solution.
+	 */
+	private static boolean couvre(Graphe graphe, BitSet solution) {
+		for (int i = 0; i < graphe.getNombreDeVilles(); i++) {
+			boolean couverte = solution.get(i);
+			for (int k = 0; k < graphe.getDegre(i); k++)
+				couverte |= solution.get(graphe.getVoisin(i, k));
+			if (!couverte)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lance une action et retourne ce qu'elle écrit sur la sortie standard.
+	 */
+	private static String capturer(Verification.Action action) throws Exception {
+		PrintStream sortie = System.out;
+		ByteArrayOutputStream octets = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(octets, true, StandardCharsets.UTF_8));
+		try {
+			action.lancer();
+		} finally {
+			System.setOut(sortie);
+		}
+		return octets.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,102 @@
+package projet_poo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Vérifie l'aller-retour des solutions par le répertoire du {@link CacheSolutions} : une
+ * solution écrite puis relue est appliquée telle quelle à la même agglomération, même avec
+ * ses villes et routes dans un autre ordre, et un fichier du cache modifié ou écrit pour une
+ * autre empreinte n'est pas utilisé.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationCache {
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationCache");
+		Random aleatoire = new Random(29);
+		File repertoire = Files.createTempDirectory("cache").toFile();
+		repertoire.deleteOnExit(); // Supprimé après ses fichiers, enregistrés ensuite
+		CacheSolutions cache = CacheSolutions.getInstance();
+		cache.setRepertoire(repertoire);
+		Metriques metriques = Metriques.getInstance();
+
+		for (int essai = 0; essai < 200; essai++) {
+			List<String> lignes = Verification.agglomerationAleatoire(aleatoire, 2 + aleatoire.nextInt(40));
+			Agglomeration premiere = charger(lignes);
+			String empreinte = premiere.getEmpreinte();
+			File fichier = new File(repertoire, empreinte + ".solution");
+			fichier.deleteOnExit();
+			premiere.solutionOptimale();
+			verification.verifier(fichier.isFile(), "la solution est écrite dans " + fichier);
+			TreeSet<String> solution = new TreeSet<String>(premiere.getEcoles());
+
+			// Même graphe, villes et routes mélangées, sans école : la solution vient du fichier
+			cache.vider();
+			Agglomeration melangee = charger(melanger(lignes, aleatoire));
+			verification.verifier(empreinte.equals(melangee.getEmpreinte()), "l'empreinte ne dépend pas de l'ordre");
+			long succes = metriques.getSuccesCache();
+			melangee.solutionOptimale();
+			verification.verifier(metriques.getSuccesCache() == succes + 1, "la solution est relue du cache");
+			verification.verifier(solution.equals(new TreeSet<String>(melangee.getEcoles())),
+					"la solution relue est celle écrite");
+			verification.verifier(melangee.respecteAccessibilite(), "la solution relue est valide");
+
+			// Fichier modifié : les écoles sont retirées, la solution est recalculée et réécrite
+			List<String> enTete = Files.readAllLines(fichier.toPath()).subList(0, 3);
+			Files.write(fichier.toPath(), enTete);
+			cache.vider();
+			Agglomeration modifiee = charger(lignes);
+			Verification.sansAffichage(modifiee::solutionOptimale);
+			verification.verifier(modifiee.respecteAccessibilite(), "une solution modifiée n'est pas appliquée");
+			verification.verifier(Files.readAllLines(fichier.toPath()).size() > 3,
+					"une solution modifiée est remplacée dans le cache");
+
+			// Fichier écrit pour une autre empreinte : il est ignoré
+			List<String> contenu = new ArrayList<String>(Files.readAllLines(fichier.toPath()));
+			contenu.set(0, "empreinte(" + "0".repeat(32) + ")");
+			Files.write(fichier.toPath(), contenu);
+			cache.vider();
+			verification.verifier(cache.chercher(empreinte) == null, "une autre empreinte est ignorée");
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Charge une agglomération depuis ses lignes.
+	 */
+	private static Agglomeration charger(List<String> lignes) throws Exception {
+		Agglomeration agglomeration = new Agglomeration();
+		File fichier = Verification.fichierTemporaire(".txt", lignes);
+		Verification.sansAffichage(() -> agglomeration.init(fichier.getPath()));
+		return agglomeration;
+	}
+
+	/**
+	 * @return les villes et les routes des lignes données, chacune dans un ordre aléatoire,
+	 * avec les noms de chaque route échangés au hasard, et sans les écoles.
+	 */
+	private static List<String> melanger(List<String> lignes, Random aleatoire) {
+		List<String> villes = new ArrayList<String>(), routes = new ArrayList<String>();
+		for (String ligne : lignes) {
+			if (ligne.startsWith("ville("))
+				villes.add(ligne);
+			else if (ligne.startsWith("route(") && aleatoire.nextBoolean())
+				routes.add(ligne);
+			else if (ligne.startsWith("route(")) {
+				String[] noms = ligne.substring("route(".length(), ligne.length() - 1).split(",");
+				routes.add("route(" + noms[1] + "," + noms[0] + ")");
+			}
+		}
+		Collections.shuffle(villes, aleatoire);
+		Collections.shuffle(routes, aleatoire);
+		villes.addAll(routes);
+		return villes;
+	}
+}
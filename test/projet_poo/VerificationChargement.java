@@ -0,0 +1,85 @@
+package projet_poo;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Vérifie que la lecture d'un fichier par {@link ChargeurParallele}, découpé en plusieurs
+ * morceaux, donne le même résultat que {@link Agglomeration#lireSequentiellement(File)} : mêmes
+ * villes dans le même ordre, mêmes voisines dans le même ordre, mêmes écoles, même empreinte, ou
+ * la même erreur avec le même message. Les fichiers sont tirés au hasard, avec parfois des lignes
+ * invalides insérées et des fins de ligne "\r\n".
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationChargement {
+
+	/**
+	 * Lignes invalides insérées au hasard dans les fichiers, ou valides mais en double.
+	 */
+	private static final String[] LIGNES_INVALIDES = { "", "ville(x)", "route(v0,v0)", "route(v0,zz)",
+			"ecole(zz)", "foo", "route(v0,v1)", "ecole(v0)", "route(,,)", "ville(()" };
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationChargement");
+		Random aleatoire = new Random(31);
+
+		for (int essai = 0; essai < 3000; essai++) {
+			int nombreDeVilles = 2 + aleatoire.nextInt(30);
+			List<String> lignes = Verification.agglomerationAleatoire(aleatoire, nombreDeVilles);
+			int erreurs = aleatoire.nextInt(3);
+			for (int e = 0; e < erreurs; e++)
+				lignes.add(aleatoire.nextInt(lignes.size() + 1), LIGNES_INVALIDES[aleatoire.nextInt(LIGNES_INVALIDES.length)]);
+			for (int i = 0; i < lignes.size(); i++)
+				if (aleatoire.nextInt(5) == 0)
+					lignes.set(i, lignes.get(i) + "\r");
+			File fichier = Verification.fichierTemporaire(".txt", lignes);
+
+			int morceaux = 2 + aleatoire.nextInt(8);
+			String sequentiel = charger(fichier, nombreDeVilles, agglomeration -> agglomeration.lireSequentiellement(fichier));
+			String parallele = charger(fichier, nombreDeVilles,
+					agglomeration -> new ChargeurParallele(fichier, agglomeration, morceaux).charger());
+			verification.verifier(sequentiel.equals(parallele), "même résultat en " + morceaux + " morceaux pour "
+					+ String.join("|", lignes) + "\n  ligne par ligne : " + sequentiel + "\n  en parallèle : " + parallele);
+			fichier.delete();
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Une façon de remplir une agglomération vide depuis un fichier.
+	 */
+	private interface Lecture {
+		void lire(Agglomeration agglomeration) throws Exception;
+	}
+
+	/**
+	 * Remplit une agglomération vide avec la lecture donnée.
+	 *
+	 * @param nombreDeVilles : le nombre de villes du fichier, sans compter les lignes invalides.
+	 * @return la description de l'agglomération obtenue, ou de l'exception levée.
+	 */
+	private static String charger(File fichier, int nombreDeVilles, Lecture lecture) {
+		Agglomeration agglomeration = new Agglomeration();
+		try {
+			Verification.sansAffichage(() -> lecture.lire(agglomeration));
+		} catch (Exception e) {
+			return e.getClass().getSimpleName() + " : " + e.getMessage();
+		}
+
+		StringBuilder description = new StringBuilder(agglomeration.getEmpreinte());
+		description.append(' ').append(agglomeration.getEcoles());
+		try {
+			for (int i = 0; i < nombreDeVilles; i++) {
+				description.append(' ').append(agglomeration.getNomVille(i)).append('[');
+				for (int k = 0; k < agglomeration.getDegre(i); k++)
+					description.append(agglomeration.getNomVille(agglomeration.getVoisin(i, k))).append(',');
+				description.append(']');
+			}
+		} catch (NullPointerException e) { // Sans route, les listes d'adjacence sont créées par init()
+			description.append(" sans routes");
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,226 @@
+package projet_poo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Vérifie l'application et l'écriture des fichiers delta ({@link FichierDelta}) sur des
+ * agglomérations tirées au hasard :
+ * - un fichier delta valide donne l'agglomération attendue, calculée à part sur un modèle, et
+ * les villes signalées comme non couvertes sont exactement celles du modèle ;
+ * - un fichier delta avec une ligne invalide à la fin est entièrement annulé : l'agglomération et
+ * son empreinte sont celles d'avant, et aucune modification n'est notée pour le prochain delta ;
+ * - le delta écrit par {@link Agglomeration#sauvegardeModifications(String)} et appliqué au
+ * fichier sauvegardé avant les modifications redonne l'agglomération modifiée ;
+ * - {@link Agglomeration#sauvegardeFichier(String)} écrit toute l'agglomération, même dans un
+ * fichier dont le nom se termine par ".delta".
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationDelta {
+
+	/**
+	 * Lignes qui ne peuvent pas être appliquées, la ville v0 existant toujours.
+	 */
+	private static final String[] LIGNES_INVALIDES = { "+ville(v0)", "+route(v0,v0)", "-route(v0,zz)",
+			"+ecole(zz)", "ecole(v0)", "", "+foo(v0)" };
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationDelta");
+		Random aleatoire = new Random(33);
+
+		for (int essai = 0; essai < 500; essai++) {
+			Agglomeration agglomeration = new Agglomeration();
+			File texte = Verification.fichierTemporaire(".txt",
+					Verification.agglomerationAleatoire(aleatoire, 2 + aleatoire.nextInt(30)));
+			File sauvegarde = Verification.fichierTemporaire(".txt", List.of());
+			Verification.sansAffichage(() -> {
+				agglomeration.init(texte.getPath());
+				agglomeration.sauvegardeFichier(sauvegarde.getPath());
+			});
+			String avant = Verification.decrire(agglomeration);
+			String empreinteAvant = agglomeration.getEmpreinte();
+
+			// Delta invalide : tout est annulé
+			Modele modele = new Modele(agglomeration);
+			List<String> lignes = modele.modifier(aleatoire, aleatoire.nextInt(20));
+			lignes.add(LIGNES_INVALIDES[aleatoire.nextInt(LIGNES_INVALIDES.length)]);
+			File invalide = Verification.fichierTemporaire(".delta", lignes);
+			boolean refuse = false;
+			try {
+				agglomeration.appliquerDelta(invalide.getPath());
+			} catch (SyntaxeFichierInvalideException e) {
+				refuse = true;
+			}
+			verification.verifier(refuse, "le delta invalide est refusé : " + lignes);
+			verification.verifier(avant.equals(Verification.decrire(agglomeration)), "le delta invalide est annulé : " + lignes);
+			verification.verifier(empreinteAvant.equals(agglomeration.getEmpreinte()),
+					"l'empreinte est rétablie après " + lignes);
+			File vide = Verification.fichierTemporaire(".delta", List.of());
+			Verification.sansAffichage(() -> agglomeration.sauvegardeModifications(vide.getPath()));
+			verification.verifier(vide.length() == 0, "le delta annulé n'est pas noté comme modification");
+
+			// Delta valide : comparaison avec le modèle
+			modele = new Modele(agglomeration);
+			lignes = modele.modifier(aleatoire, 1 + aleatoire.nextInt(20));
+			BitSet nonCouvertes = new FichierDelta(agglomeration).appliquer(Verification.fichierTemporaire(".delta", lignes));
+			verification.verifier(modele.decrire().equals(Verification.decrire(agglomeration)),
+					"le delta donne l'agglomération attendue : " + lignes);
+			TreeSet<String> nomsNonCouvertes = new TreeSet<String>();
+			for (int ville = nonCouvertes.nextSetBit(0); ville >= 0; ville = nonCouvertes.nextSetBit(ville + 1))
+				nomsNonCouvertes.add(agglomeration.getNomVille(ville));
+			verification.verifier(modele.villesNonCouvertes().equals(nomsNonCouvertes),
+					"les villes non couvertes sont signalées après " + lignes);
+			Agglomeration rechargee = new Agglomeration();
+			File complet = Verification.fichierTemporaire(".txt", modele.lignes());
+			Verification.sansAffichage(() -> rechargee.init(complet.getPath()));
+			verification.verifier(rechargee.getEmpreinte().equals(agglomeration.getEmpreinte()),
+					"l'empreinte est mise à jour par " + lignes);
+
+			// Delta écrit puis rejoué sur le fichier sauvegardé avant les modifications
+			File ecrit = Verification.fichierTemporaire(".delta", List.of());
+			Verification.sansAffichage(() -> agglomeration.sauvegardeModifications(ecrit.getPath()));
+			Agglomeration rejouee = new Agglomeration();
+			Verification.sansAffichage(() -> rejouee.init(sauvegarde.getPath()));
+			new FichierDelta(rejouee).appliquer(ecrit);
+			verification.verifier(Verification.decrire(agglomeration).equals(Verification.decrire(rejouee)),
+					"le delta écrit redonne l'agglomération modifiée : " + lignes);
+
+			// Sauvegarde complète dans un fichier qui porte le nom d'un delta
+			File completTexte = Verification.fichierTemporaire(".txt", List.of());
+			File completDelta = Verification.fichierTemporaire(".delta", List.of());
+			Verification.sansAffichage(() -> {
+				agglomeration.sauvegardeFichier(completTexte.getPath());
+				agglomeration.sauvegardeFichier(completDelta.getPath());
+			});
+			verification.verifier(completTexte.length() > 0 && Arrays.equals(Files.readAllBytes(completTexte.toPath()),
+					Files.readAllBytes(completDelta.toPath())), "sauvegardeFichier écrit toute l'agglomération dans un fichier .delta");
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Copie d'une agglomération sous forme d'ensembles de noms, modifiée en même temps que les
+	 * lignes du fichier delta sont créées.
+	 */
+	private static final class Modele {
+
+		private final LinkedHashSet<String> villes = new LinkedHashSet<String>();
+		private final LinkedHashSet<List<String>> routes = new LinkedHashSet<List<String>>();
+		private final HashSet<String> ecoles = new HashSet<String>();
+		private int villesAjoutees = 0;
+
+		Modele(Graphe graphe) {
+			for (int i = 0; i < graphe.getNombreDeVilles(); i++) {
+				villes.add(graphe.getNomVille(i));
+				if (graphe.possedeEcole(i))
+					ecoles.add(graphe.getNomVille(i));
+				for (int k = 0; k < graphe.getDegre(i); k++)
+					routes.add(route(graphe.getNomVille(i), graphe.getNomVille(graphe.getVoisin(i, k))));
+			}
+		}
+
+		/**
+		 * Fait des modifications au hasard, toutes applicables.
+		 *
+		 * @return les lignes du fichier delta correspondant.
+		 */
+		List<String> modifier(Random aleatoire, int nombre) {
+			List<String> lignes = new ArrayList<String>();
+			List<String> noms = new ArrayList<String>(villes);
+			while (lignes.size() < nombre) {
+				String ville1 = noms.get(aleatoire.nextInt(noms.size()));
+				String ville2 = noms.get(aleatoire.nextInt(noms.size()));
+				switch (aleatoire.nextInt(4)) {
+				case 0:
+					String nouvelle = "w" + villesAjoutees++;
+					villes.add(nouvelle);
+					noms.add(nouvelle);
+					lignes.add("+ville(" + nouvelle + ")");
+					break;
+				case 1:
+					if (!ville1.equals(ville2) && routes.add(route(ville1, ville2)))
+						lignes.add("+route(" + ville1 + "," + ville2 + ")");
+					break;
+				case 2:
+					if (routes.remove(route(ville1, ville2)))
+						lignes.add("-route(" + ville1 + "," + ville2 + ")");
+					break;
+				default:
+					boolean ajout = ecoles.add(ville1);
+					if (!ajout)
+						ecoles.remove(ville1);
+					lignes.add((ajout ? "+" : "-") + "ecole(" + ville1 + ")");
+					break;
+				}
+			}
+			return lignes;
+		}
+
+		/**
+		 * @return les lignes d'un fichier d'agglomération décrivant le modèle.
+		 */
+		List<String> lignes() {
+			List<String> lignes = new ArrayList<String>();
+			for (String ville : villes)
+				lignes.add("ville(" + ville + ")");
+			for (List<String> route : routes)
+				lignes.add("route(" + route.get(0) + "," + route.get(1) + ")");
+			for (String ecole : ecoles)
+				lignes.add("ecole(" + ecole + ")");
+			return lignes;
+		}
+
+		/**
+		 * @return la description du modèle, au format de {@link Verification#decrire(Graphe)}.
+		 */
+		String decrire() {
+			TreeMap<String, String> description = new TreeMap<String, String>();
+			for (String ville : villes)
+				description.put(ville, (ecoles.contains(ville) ? "*" : "") + voisines(ville));
+			return description.toString();
+		}
+
+		/**
+		 * @return les noms des villes qui n'ont pas d'école et dont aucune voisine n'en a.
+		 */
+		TreeSet<String> villesNonCouvertes() {
+			TreeSet<String> nonCouvertes = new TreeSet<String>();
+			for (String ville : villes) {
+				boolean couverte = ecoles.contains(ville);
+				for (String voisine : voisines(ville))
+					couverte |= ecoles.contains(voisine);
+				if (!couverte)
+					nonCouvertes.add(ville);
+			}
+			return nonCouvertes;
+		}
+
+		private TreeSet<String> voisines(String ville) {
+			TreeSet<String> voisines = new TreeSet<String>();
+			for (List<String> route : routes) {
+				if (route.get(0).equals(ville))
+					voisines.add(route.get(1));
+				else if (route.get(1).equals(ville))
+					voisines.add(route.get(0));
+			}
+			return voisines;
+		}
+
+		/**
+		 * @return la route entre deux villes, la même quel que soit leur ordre.
+		 */
+		private static List<String> route(String ville1, String ville2) {
+			return ville1.compareTo(ville2) < 0 ? List.of(ville1, ville2) : List.of(ville2, ville1);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package projet_poo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Vérifie l'aller-retour d'un graphe par un fichier {@link GrapheMappe} : le graphe relu est
+ * celui qui a été écrit, les écoles modifiées sont conservées après fermeture, et un fichier
+ * tronqué, agrandi ou qui n'est pas un fichier de graphe est refusé sans être modifié.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationGrapheMappe {
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationGrapheMappe");
+		Random aleatoire = new Random(30);
+
+		for (int essai = 0; essai < 200; essai++) {
+			Agglomeration agglomeration = new Agglomeration();
+			File texte = Verification.fichierTemporaire(".txt",
+					Verification.agglomerationAleatoire(aleatoire, 2 + aleatoire.nextInt(200)));
+			Verification.sansAffichage(() -> agglomeration.init(texte.getPath()));
+			File fichier = File.createTempFile("verification", ".graphe");
+			fichier.deleteOnExit();
+			GrapheMappe.ecrire(agglomeration, fichier.getPath());
+
+			String attendu = Verification.decrire(agglomeration);
+			try (GrapheMappe graphe = new GrapheMappe(fichier.getPath())) {
+				verification.verifier(attendu.equals(Verification.decrire(graphe)), "le graphe relu est celui écrit");
+				for (int i = 0; i < graphe.getNombreDeVilles(); i++) {
+					boolean ecole = aleatoire.nextBoolean();
+					graphe.setEcole(i, ecole);
+					agglomeration.setEcole(i, ecole);
+				}
+			}
+			try (GrapheMappe graphe = new GrapheMappe(fichier.getPath())) {
+				verification.verifier(Verification.decrire(agglomeration).equals(Verification.decrire(graphe)),
+						"les écoles modifiées sont conservées");
+			}
+
+			byte[] contenu = Files.readAllBytes(fichier.toPath());
+			int[] longueurs = { 0, 30, contenu.length / 2, contenu.length - 1 };
+			for (int longueur : longueurs)
+				verifierRefus(verification, fichier, Arrays.copyOf(contenu, longueur), "tronqué à " + longueur + " octets");
+			verifierRefus(verification, fichier, Arrays.copyOf(contenu, contenu.length + 1), "agrandi d'un octet");
+			verifierRefus(verification, fichier, Files.readAllBytes(texte.toPath()), "au format texte");
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Vérifie qu'un fichier avec le contenu donné est refusé à l'ouverture et n'est pas modifié.
+	 */
+	private static void verifierRefus(Verification verification, File fichier, byte[] contenu, String description)
+			throws IOException {
+		Files.write(fichier.toPath(), contenu);
+		boolean refuse = false;
+		try (GrapheMappe graphe = new GrapheMappe(fichier.getPath())) {
+			graphe.getNombreDeVilles();
+		} catch (IOException e) {
+			refuse = true;
+		}
+		verification.verifier(refuse, "un fichier " + description + " est refusé");
+		verification.verifier(Arrays.equals(contenu, Files.readAllBytes(fichier.toPath())),
+				"un fichier " + description + " n'est pas modifié");
+	}
+}
@@ -0,0 +1,126 @@
+package projet_poo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Vérifie que le {@link Serveur} traite plusieurs {@link Client}s en même temps : avec plus de
+ * clients inactifs que de threads d'exécution des commandes, un client qui valide l'agglomération
+ * en boucle (verrou en lecture) et un client qui ajoute et retire une école en boucle (verrou en
+ * écriture) reçoivent toutes leurs réponses, la validation voit toujours une configuration valide,
+ * et un client inactif répond encore à la fin. La commande arreter arrête ensuite le serveur.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationServeur {
+
+	/**
+	 * Nombre de threads d'exécution des commandes du serveur, et nombre de clients inactifs.
+	 */
+	private static final int THREADS = 2, CLIENTS_INACTIFS = 3;
+
+	/**
+	 * Nombre de commandes envoyées par le client qui lit et par celui qui modifie.
+	 */
+	private static final int COMMANDES = 2000;
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationServeur");
+		List<String> lignes = new ArrayList<String>();
+		for (int i = 0; i < 50; i++)
+			lignes.add("ville(v" + i + ")");
+		for (int i = 0; i + 1 < 50; i++)
+			lignes.add("route(v" + i + ",v" + (i + 1) + ")");
+		for (int i = 0; i < 50; i++)
+			if (i != 25) // v25 est couverte par v24 : son école peut toujours être ajoutée et retirée
+				lignes.add("ecole(v" + i + ")");
+		File fichier = Verification.fichierTemporaire(".txt", lignes);
+
+		Serveur serveur = new Serveur(0, THREADS);
+		Thread ecoute = new Thread(serveur::lancer);
+		ecoute.start();
+		int port = serveur.getPort();
+		ExecutorService clients = Executors.newCachedThreadPool();
+
+		List<Client> inactifs = new ArrayList<Client>();
+		for (int i = 0; i < CLIENTS_INACTIFS; i++)
+			inactifs.add(new Client(port));
+
+		Future<String> charger = clients.submit(() -> {
+			try (Client client = new Client(port)) {
+				return client.envoyer("charger a " + fichier.getPath());
+			}
+		});
+		verification.verifier("OK 50 villes".equals(attendre(charger)), "charger répond : " + attendre(charger));
+
+		Future<String> lecteur = clients.submit(commandes(port, i -> "valider a", "OK valide"));
+		Future<String> modificateur = clients.submit(commandes(port, i -> (i % 2 == 0 ? "ajouter" : "retirer") + " a v25",
+				"OK"));
+		verification.verifier(attendre(lecteur) == null, "le client qui valide reçoit des réponses valides : "
+				+ attendre(lecteur));
+		verification.verifier(attendre(modificateur) == null, "le client qui modifie reçoit des réponses : "
+				+ attendre(modificateur));
+
+		Future<String> liste = clients.submit(() -> inactifs.get(0).envoyer("liste"));
+		verification.verifier("OK a".equals(attendre(liste)), "un client inactif répond encore");
+		Future<String> arret = clients.submit(() -> inactifs.get(1).envoyer("arreter"));
+		verification.verifier("OK".equals(attendre(arret)), "arreter répond");
+		ecoute.join(10_000);
+		verification.verifier(!ecoute.isAlive(), "le serveur s'arrête");
+
+		for (Client client : inactifs)
+			client.close();
+		clients.shutdownNow();
+		verification.terminer();
+	}
+
+	/**
+	 * Le texte d'une commande selon son numéro.
+	 */
+	private interface Commande {
+		String texte(int numero);
+	}
+
+	/**
+	 * Crée une tâche qui se connecte au serveur et envoie {@link #COMMANDES} commandes.
+	 *
+	 * @param reponseAttendue : la réponse attendue à chaque commande.
+	 * @return la tâche, qui retourne null si toutes les réponses sont correctes, sinon la
+	 * première réponse incorrecte.
+	 */
+	private static Callable<String> commandes(int port, Commande commande, String reponseAttendue) {
+		return () -> {
+			try (Client client = new Client(port)) {
+				for (int i = 0; i < COMMANDES; i++) {
+					String texte = commande.texte(i);
+					String reponse = client.envoyer(texte);
+					if (!reponseAttendue.equals(reponse))
+						return texte + " -> " + reponse;
+				}
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Attend le résultat d'une tâche, au plus 30 secondes.
+	 *
+	 * @return le résultat, ou un message si la tâche a échoué ou n'a pas répondu à temps.
+	 */
+	private static String attendre(Future<String> tache) {
+		try {
+			return tache.get(30, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			return "pas de réponse après 30 secondes";
+		} catch (Exception e) {
+			return e.toString();
+		}
+	}
+}
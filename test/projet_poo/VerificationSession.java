@@ -0,0 +1,82 @@
+package projet_poo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vérifie qu'une session du programme dont toutes les saisies sont redirigées vers l'entrée
+ * standard va jusqu'au bout : les lignes déjà saisies au début de la résolution automatique ne
+ * l'annulent pas et sont utilisées par les saisies suivantes (sauvegarde, résolution manuelle,
+ * fin du programme). Le programme est lancé dans un autre processus, plusieurs fois pour ne pas
+ * dépendre de la vitesse des threads.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationSession {
+
+	/**
+	 * Nombre de sessions lancées.
+	 */
+	private static final int SESSIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		Verification verification = new Verification("VerificationSession");
+		File fichier = Verification.fichierTemporaire(".txt", List.of("ville(a)", "ville(b)", "ville(c)", "ville(d)",
+				"route(a,b)", "route(b,c)", "route(c,d)"));
+
+		for (int session = 0; session < SESSIONS; session++) {
+			File sauvegarde = Verification.fichierTemporaire(".txt", List.of());
+			sauvegarde.delete();
+			// Résolution automatique, sauvegarde, retrait refusé de l'école de b, retour, fin
+			String saisies = "2\n3\n" + sauvegarde.getPath() + "\n1\n2\nb\n3\n4\n";
+
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			Process programme = new ProcessBuilder(java, "-Dfile.encoding=UTF-8", "-Dstdout.encoding=UTF-8", "-cp",
+					System.getProperty("java.class.path"), "projet_poo.Main", fichier.getPath())
+					.redirectErrorStream(true).start();
+			try (OutputStream entree = programme.getOutputStream()) {
+				entree.write(saisies.getBytes(StandardCharsets.UTF_8));
+			}
+			String sortie = lire(programme);
+			boolean termine = programme.waitFor(30, TimeUnit.SECONDS);
+			if (!termine)
+				programme.destroyForcibly();
+
+			verification.verifier(termine && programme.exitValue() == 0, "le programme se termine normalement");
+			verification.verifier(sortie.contains("Après application de l'algorithme"),
+					"la résolution n'est pas annulée :\n" + sortie);
+			verification.verifier(sauvegarde.isFile()
+					&& Files.readAllLines(sauvegarde.toPath()).containsAll(List.of("ecole(b)", "ecole(c)")),
+					"la sauvegarde a lieu après la résolution :\n" + sortie);
+			verification.verifier(sortie.contains("Erreur : la ville a n'aurait plus d'école sans l'école de b"),
+					"la résolution manuelle reçoit ses saisies :\n" + sortie);
+			verification.verifier(!sortie.contains("Fin de fichier rencontrée"),
+					"le programme se termine par le choix 4, pas par la fin de l'entrée :\n" + sortie);
+			sauvegarde.delete();
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Lit toute la sortie du programme, au plus 30 secondes.
+	 */
+	private static String lire(Process programme) throws IOException, InterruptedException {
+		byte[][] sortie = new byte[1][];
+		Thread lecture = new Thread(() -> {
+			try {
+				sortie[0] = programme.getInputStream().readAllBytes();
+			} catch (IOException e) {
+				sortie[0] = new byte[0];
+			}
+		});
+		lecture.setDaemon(true);
+		lecture.start();
+		lecture.join(30_000);
+		return sortie[0] == null ? "" : new String(sortie[0], StandardCharsets.UTF_8);
+	}
+}
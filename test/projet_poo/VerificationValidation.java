@@ -0,0 +1,124 @@
+package projet_poo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Vérifie {@link Validation} et {@link SolveurGlouton#completer(Graphe, BitSet)} sur des graphes
+ * tirés au hasard, dont le nombre de villes est autour d'un multiple de 64 (taille d'un mot de
+ * l'ensemble résultat) ou de la taille d'un intervalle vérifié sans être redécoupé :
+ * - {@link Validation#villesNonCouvertes(Graphe)}, en parallèle, donne exactement les villes pour
+ * lesquelles {@link Validation#estCouverte(Graphe, int)} est faux, et est vide si et seulement si
+ * {@link Validation#respecteAccessibilite(Graphe)} est vrai ;
+ * - après {@link SolveurGlouton#completer(Graphe, BitSet)}, les écoles existantes sont gardées,
+ * le nombre d'écoles ajoutées est celui annoncé et toutes les villes sont couvertes.
+ *
+ * @author Zine Eddine BENZENATI, Nadir BORDJAH, Adrian HEOUAIRI (groupe 1)
+ */
+final class VerificationValidation {
+
+	/**
+	 * Tailles autour desquelles les nombres de villes sont choisis, et nombre d'essais par
+	 * nombre de villes pour chacune.
+	 */
+	private static final int[] TAILLES = { 64, 128, 1024, 1 << 14, 1 << 15, 3 << 14 };
+	private static final int[] ESSAIS = { 200, 200, 50, 5, 5, 5 };
+
+	public static void main(String[] args) {
+		Verification verification = new Verification("VerificationValidation");
+		Random aleatoire = new Random(32);
+
+		for (int t = 0; t < TAILLES.length; t++) {
+			for (int nombreDeVilles = TAILLES[t] - 1; nombreDeVilles <= TAILLES[t] + 1; nombreDeVilles++) {
+				for (int essai = 0; essai < ESSAIS[t]; essai++) {
+					GrapheAleatoire graphe = new GrapheAleatoire(aleatoire, nombreDeVilles);
+					String cas = nombreDeVilles + " villes, essai " + essai;
+
+					BitSet attendues = new BitSet(nombreDeVilles);
+					for (int i = 0; i < nombreDeVilles; i++)
+						if (!Validation.estCouverte(graphe, i))
+							attendues.set(i);
+					BitSet nonCouvertes = Validation.villesNonCouvertes(graphe);
+					verification.verifier(attendues.equals(nonCouvertes), "villesNonCouvertes donne les villes non couvertes ("
+							+ cas + ") : " + nonCouvertes + " au lieu de " + attendues);
+					verification.verifier(Validation.respecteAccessibilite(graphe) == attendues.isEmpty(),
+							"respecteAccessibilite est vrai si et seulement si aucune ville n'est non couverte (" + cas + ")");
+
+					BitSet ecolesAvant = (BitSet) graphe.ecoles.clone();
+					int ajoutees = SolveurGlouton.completer(graphe, nonCouvertes);
+					BitSet gardees = (BitSet) ecolesAvant.clone();
+					gardees.and(graphe.ecoles);
+					verification.verifier(gardees.equals(ecolesAvant), "completer garde les écoles existantes (" + cas + ")");
+					verification.verifier(graphe.ecoles.cardinality() == ecolesAvant.cardinality() + ajoutees,
+							"completer ajoute le nombre d'écoles annoncé (" + cas + ")");
+					verification.verifier(nonCouvertes.isEmpty(), "completer vide l'ensemble des villes non couvertes (" + cas + ")");
+					verification.verifier(Validation.respecteAccessibilite(graphe)
+							&& Validation.villesNonCouvertes(graphe).isEmpty(), "completer couvre toutes les villes (" + cas + ")");
+				}
+			}
+		}
+		verification.terminer();
+	}
+
+	/**
+	 * Graphe en mémoire tiré au hasard : des routes entre des villes différentes sans doublon,
+	 * de 0 à 3 fois plus nombreuses que les villes, et des écoles avec une densité elle aussi
+	 * tirée au hasard (parfois aucune école, parfois presque toutes les villes).
+	 */
+	private static final class GrapheAleatoire implements Graphe {
+
+		private final List<List<Integer>> voisins = new ArrayList<List<Integer>>();
+		private final BitSet ecoles = new BitSet();
+
+		GrapheAleatoire(Random aleatoire, int nombreDeVilles) {
+			for (int i = 0; i < nombreDeVilles; i++)
+				voisins.add(new ArrayList<Integer>());
+			HashSet<Long> routes = new HashSet<Long>();
+			int nombreDeRoutes = aleatoire.nextInt(3 * nombreDeVilles);
+			for (int i = 0; i < nombreDeRoutes; i++) {
+				int ville1 = aleatoire.nextInt(nombreDeVilles), ville2 = aleatoire.nextInt(nombreDeVilles);
+				if (ville1 != ville2 && routes.add((long) Math.min(ville1, ville2) << 32 | Math.max(ville1, ville2))) {
+					voisins.get(ville1).add(ville2);
+					voisins.get(ville2).add(ville1);
+				}
+			}
+			int densite = aleatoire.nextInt(11);
+			for (int i = 0; i < nombreDeVilles; i++)
+				if (aleatoire.nextInt(10) < densite)
+					ecoles.set(i);
+		}
+
+		@Override
+		public int getNombreDeVilles() {
+			return voisins.size();
+		}
+
+		@Override
+		public int getDegre(int ville) {
+			return voisins.get(ville).size();
+		}
+
+		@Override
+		public int getVoisin(int ville, int rang) {
+			return voisins.get(ville).get(rang);
+		}
+
+		@Override
+		public String getNomVille(int ville) {
+			return "v" + ville;
+		}
+
+		@Override
+		public boolean possedeEcole(int ville) {
+			return ecoles.get(ville);
+		}
+
+		@Override
+		public void setEcole(int ville, boolean ecole) {
+			ecoles.set(ville, ecole);
+		}
+	}
+}